@@ -0,0 +1,90 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.VehicleVisitCache;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// DAO queries against an embedded database holding vehicles * ticketHistoryDepth closed tickets. getNbTickets runs
+// the COUNT query every time, with a visit cache that keeps nothing; getNbTicketsCached measures the cache hits.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataAccessBenchmark {
+
+    private static final int VEHICLES = 100;
+
+    @Param({"100", "1000"})
+    public int lotSize;
+
+    @Param({"10", "500"})
+    public int ticketHistoryDepth;
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+    private TicketDAO ticketDAO;
+    private TicketDAO cachedTicketDAO;
+    private ParkingSpotDAO parkingSpotDAO;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("dataaccess" + lotSize + "_" + ticketHistoryDepth);
+        dataBaseConfig.createDataBase(lotSize, VEHICLES, ticketHistoryDepth);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.vehicleVisitCache = new VehicleVisitCache(0);
+        cachedTicketDAO = new TicketDAO();
+        cachedTicketDAO.dataBaseConfig = dataBaseConfig;
+        for (int vehicle = 0; vehicle < VEHICLES; vehicle++) {
+            cachedTicketDAO.getNbTickets(EmbeddedDataBaseConfig.vehicleRegNumber(vehicle));
+        }
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        random = new SplittableRandom(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        dataBaseConfig.dropDataBase();
+    }
+
+    @Benchmark
+    public Ticket getTicket() {
+        return ticketDAO.getTicket(EmbeddedDataBaseConfig.vehicleRegNumber(random.nextInt(VEHICLES)));
+    }
+
+    @Benchmark
+    public int getNbTickets() {
+        return ticketDAO.getNbTickets(EmbeddedDataBaseConfig.vehicleRegNumber(random.nextInt(VEHICLES)));
+    }
+
+    @Benchmark
+    public int getNbTicketsCached() {
+        return cachedTicketDAO.getNbTickets(EmbeddedDataBaseConfig.vehicleRegNumber(random.nextInt(VEHICLES)));
+    }
+
+    @Benchmark
+    public int getNextAvailableSlot() {
+        return parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+    }
+}
@@ -0,0 +1,91 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+// In-memory H2 database in MySQL mode, with the schema of the application migrations
+public class EmbeddedDataBaseConfig extends DataBaseConfig {
+
+    public static final String VEHICLE_PREFIX = "BENCH";
+    private static final long HOUR_IN_MILLIS = 60L * 60 * 1000;
+
+    private final String url;
+    private int seededTickets;
+
+    public EmbeddedDataBaseConfig(String name) {
+        this.url = "jdbc:h2:mem:" + name + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    protected String getUrl() {
+        return url;
+    }
+
+    @Override
+    protected Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(url, "sa", "");
+    }
+
+    // lotSize spots (two thirds CAR, the rest BIKE) and ticketHistoryDepth closed tickets for each of the vehicles
+    public void createDataBase(int lotSize, int vehicles, int ticketHistoryDepth) throws Exception {
+        new SchemaMigrator(this).migrate();
+        try (Connection con = getConnection()) {
+            try (PreparedStatement ps = con.prepareStatement("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)")) {
+                for (int parkingNumber = 1; parkingNumber <= lotSize; parkingNumber++) {
+                    ps.setInt(1, parkingNumber);
+                    ps.setString(2, parkingNumber <= lotSize * 2 / 3 ? "CAR" : "BIKE");
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            long start = System.currentTimeMillis() - (long) ticketHistoryDepth * 24 * HOUR_IN_MILLIS;
+            try (PreparedStatement ps = con.prepareStatement(
+                    "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)")) {
+                for (int visit = 0; visit < ticketHistoryDepth; visit++) {
+                    long inTime = start + visit * 24 * HOUR_IN_MILLIS;
+                    for (int vehicle = 0; vehicle < vehicles; vehicle++) {
+                        ps.setInt(1, 1 + vehicle % lotSize);
+                        ps.setString(2, vehicleRegNumber(vehicle));
+                        ps.setDouble(3, 1.5);
+                        ps.setTimestamp(4, new Timestamp(inTime));
+                        ps.setTimestamp(5, new Timestamp(inTime + HOUR_IN_MILLIS));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+            seededTickets = vehicles * ticketHistoryDepth;
+        }
+    }
+
+    // Drops the tickets created by the benchmark itself so that the history depth stays the one asked for
+    public void deleteBenchmarkTickets() throws Exception {
+        try (Connection con = getConnection();
+             PreparedStatement activePs = con.prepareStatement("delete from active_ticket where TICKET_ID > ?");
+             PreparedStatement ps = con.prepareStatement("delete from ticket where ID > ?")) {
+            activePs.setInt(1, seededTickets);
+            activePs.executeUpdate();
+            ps.setInt(1, seededTickets);
+            ps.executeUpdate();
+        }
+    }
+
+    public void dropDataBase() throws Exception {
+        try (Connection con = getConnection(); Statement statement = con.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        getConnectionPool().close();
+    }
+
+    public static String vehicleRegNumber(int vehicle) {
+        return VEHICLE_PREFIX + vehicle;
+    }
+}
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+// Full entry then exit of a returning vehicle through ParkingService, console output discarded
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParkingFlowBenchmark {
+
+    private static final int VEHICLES = 100;
+
+    @Param({"100", "1000"})
+    public int lotSize;
+
+    @Param({"10", "500"})
+    public int ticketHistoryDepth;
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+    private ScriptedInputReaderUtil inputReaderUtil;
+    private ParkingService parkingService;
+    private PrintStream console;
+    private int nextVehicle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("flow" + lotSize + "_" + ticketHistoryDepth);
+        dataBaseConfig.createDataBase(lotSize, VEHICLES, ticketHistoryDepth);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadParkingSpotIndex();
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.loadActiveTickets();
+        inputReaderUtil = new ScriptedInputReaderUtil();
+        inputReaderUtil.setSelection(1);
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, new FareCalculatorService());
+
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Iteration)
+    public void resetTickets() throws Exception {
+        dataBaseConfig.deleteBenchmarkTickets();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.setOut(console);
+        dataBaseConfig.dropDataBase();
+    }
+
+    @Benchmark
+    public void entryExitCycle() {
+        inputReaderUtil.setVehicleRegNumber(EmbeddedDataBaseConfig.vehicleRegNumber(nextVehicle));
+        nextVehicle = (nextVehicle + 1) % VEHICLES;
+        parkingService.processIncomingVehicle();
+        parkingService.processExitingVehicle();
+    }
+}
@@ -0,0 +1,34 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.util.InputReaderUtil;
+
+import java.util.Scanner;
+
+// Answers ParkingService prompts without a console
+public class ScriptedInputReaderUtil extends InputReaderUtil {
+
+    private int selection;
+    private String vehicleRegNumber;
+
+    public ScriptedInputReaderUtil() {
+        super(new Scanner(""));
+    }
+
+    public void setSelection(int selection) {
+        this.selection = selection;
+    }
+
+    public void setVehicleRegNumber(String vehicleRegNumber) {
+        this.vehicleRegNumber = vehicleRegNumber;
+    }
+
+    @Override
+    public int readSelection() {
+        return selection;
+    }
+
+    @Override
+    public String readVehicleRegistrationNumber() {
+        return vehicleRegNumber;
+    }
+}
@@ -0,0 +1,71 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Claim/release of a spot in the in-memory index, from one gate and from several gates at once, with the lot on
+// one level or sharded over several
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpotAllocationBenchmark {
+
+    @Param({"100", "10000"})
+    public int lotSize;
+
+    // Share of the lot already occupied, the free spots being at the end of each level
+    @Param({"0", "90"})
+    public int occupancyPercent;
+
+    // Levels the lot is split into, one shard of the index each
+    @Param({"1", "8"})
+    public int levels;
+
+    private ParkingSpotIndex parkingSpotIndex;
+
+    @Setup
+    public void setUp() {
+        int occupied = lotSize * occupancyPercent / 100;
+        int levelSize = (lotSize + levels - 1) / levels;
+        List<ParkingSpot> parkingSpots = new ArrayList<>(lotSize);
+        for (int parkingNumber = 1; parkingNumber <= lotSize; parkingNumber++) {
+            parkingSpots.add(new ParkingSpot(parkingNumber, ParkingType.CAR, (parkingNumber - 1) % levelSize >= occupied / levels,
+                    1, (parkingNumber - 1) / levelSize));
+        }
+        parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotIndex.load(parkingSpots);
+    }
+
+    @Benchmark
+    public int claimAndRelease() {
+        int parkingNumber = parkingSpotIndex.claim(ParkingType.CAR);
+        parkingSpotIndex.release(parkingNumber, ParkingType.CAR);
+        return parkingNumber;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int claimAndReleaseFromFourGates() {
+        return claimAndRelease();
+    }
+}
@@ -1,3 +1,5 @@
+/* Indexes and later schema changes are applied on startup from src/main/resources/db/migration */
+
 /* Setting up PROD_PARKINGSYSTEM DB */
 create database prod_parkingsystem;
 use prod_parkingsystem;
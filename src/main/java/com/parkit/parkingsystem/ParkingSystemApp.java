@@ -1,19 +1,82 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.archive.TicketArchive;
+import com.parkit.parkingsystem.metrics.MetricsHttpServer;
+import com.parkit.parkingsystem.metrics.MetricsMBean;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.service.EventStreamProcessor;
+import com.parkit.parkingsystem.service.GateServer;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.SettlementJob;
+import com.parkit.parkingsystem.service.TicketAnalytics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Path;
+
 public class ParkingSystemApp {
     private static final Logger logger = LogManager.getLogger("ParkingSystemApp");
 
     public static void main(String[] args){
         logger.info("Initializing Parking System");
-        try {
-            InteractiveShell.loadInterface();
+        MetricsHttpServer metricsServer = null;
+        try (StorageEngine storageEngine = StorageEngine.fromSystemProperties()) {
+            metricsServer = MetricsHttpServer.fromSystemProperties(MetricsRegistry.getDefault());
+            logger.info("Using {} storage", storageEngine.type());
+            if (storageEngine.type() == StorageEngine.Type.JDBC) {
+                SchemaMigrator schemaMigrator = new SchemaMigrator(new DataBaseConfig());
+                schemaMigrator.migrate();
+                schemaMigrator.verifySchema();
+            }
+            registerGauges(MetricsRegistry.getDefault(), storageEngine);
+            MetricsMBean.register(MetricsRegistry.getDefault());
+            if (args.length == 2 && "--export-archive".equals(args[0])) {
+                TicketArchive.export(storageEngine, Path.of(args[1]));
+            } else if (args.length > 0 && "--settle".equals(args[0])) {
+                SettlementJob.runSettlement(args, storageEngine);
+            } else if (args.length > 0 && "--analytics".equals(args[0])) {
+                TicketAnalytics.runReport(args, storageEngine);
+            } else {
+                StorageEngine servedStorage = Boolean.getBoolean("parkit.analytics")
+                        ? new TicketAnalytics().attach(storageEngine) : storageEngine;
+                if (args.length > 0 && "--gate-server".equals(args[0])) {
+                    GateServer.runGateServer(args, servedStorage);
+                } else if (args.length > 0) {
+                    EventStreamProcessor.loadEventStream(args, servedStorage);
+                } else {
+                    InteractiveShell.loadInterface(servedStorage);
+                }
+            }
         } catch (Exception e) {
             logger.error("Error occurred while loading the parking interface", e);
+        } finally {
+            if (metricsServer != null) {
+                metricsServer.close();
+            }
+            DataBaseConfig.shutdownConnectionPools();
         }
 
     }
+
+    private static void registerGauges(MetricsRegistry registry, StorageEngine storageEngine) {
+        ParkingSpotRepository parkingSpotRepository = storageEngine.parkingSpotRepository();
+        for (ParkingType parkingType : ParkingType.values()) {
+            registry.gauge("parking.spots.available." + parkingType, () -> parkingSpotRepository.getAvailableCount(parkingType));
+            registry.gauge("parking.spots.capacity." + parkingType, () -> parkingSpotRepository.getCapacity(parkingType));
+        }
+        if (storageEngine.type() == StorageEngine.Type.JDBC) {
+            ConnectionPool connectionPool = new DataBaseConfig().getConnectionPool();
+            registry.gauge("db.pool.active", connectionPool::getActiveConnections);
+            registry.gauge("db.pool.idle", connectionPool::getIdleConnections);
+            registry.gauge("db.pool.waiting", connectionPool::getWaitingThreads);
+            registry.gauge("db.pool.timeouts", connectionPool::getTimeoutCount);
+            registry.gauge("db.pool.leaks", connectionPool::getLeakCount);
+        }
+    }
 }
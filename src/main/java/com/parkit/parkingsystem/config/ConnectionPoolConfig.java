@@ -0,0 +1,91 @@
+package com.parkit.parkingsystem.config;
+
+public class ConnectionPoolConfig {
+    private int minSize = 2;
+    private int maxSize = 10;
+    private long maxWaitMillis = 5_000;
+    private long idleTimeoutMillis = 10 * 60_000;
+    private long validationIntervalMillis = 500;
+    private int validationTimeoutSeconds = 2;
+    private long leakDetectionThresholdMillis = 0;
+    private long housekeepingPeriodMillis = 30_000;
+
+    public static ConnectionPoolConfig fromSystemProperties() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setMinSize(Integer.getInteger("parkit.db.pool.minSize", config.getMinSize()));
+        config.setMaxSize(Integer.getInteger("parkit.db.pool.maxSize", config.getMaxSize()));
+        config.setMaxWaitMillis(Long.getLong("parkit.db.pool.maxWaitMillis", config.getMaxWaitMillis()));
+        config.setIdleTimeoutMillis(Long.getLong("parkit.db.pool.idleTimeoutMillis", config.getIdleTimeoutMillis()));
+        config.setValidationIntervalMillis(Long.getLong("parkit.db.pool.validationIntervalMillis", config.getValidationIntervalMillis()));
+        config.setLeakDetectionThresholdMillis(Long.getLong("parkit.db.pool.leakDetectionThresholdMillis", config.getLeakDetectionThresholdMillis()));
+        return config;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    // A connection returned more recently than this is handed out again without a validation ping
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public void setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    // 0, the default, disables leak detection
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    // Above 0, every borrow captures the stack of its caller so that a leak can be traced back to it: a stack walk
+    // per connection, so per statement outside a unit of work. Meant for chasing a leak, not for production traffic.
+    public void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+    }
+
+    public long getHousekeepingPeriodMillis() {
+        return housekeepingPeriodMillis;
+    }
+
+    public void setHousekeepingPeriodMillis(long housekeepingPeriodMillis) {
+        this.housekeepingPeriodMillis = housekeepingPeriodMillis;
+    }
+}
@@ -4,23 +4,57 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+    // One pool per database URL, shared by every DAO instance pointing at it
+    private static final Map<String, ConnectionPool> connectionPools = new ConcurrentHashMap<>();
+
     public Connection getConnection() throws ClassNotFoundException, SQLException {
+        TransactionContext transaction = TransactionContext.current();
+        if (transaction != null && transaction.getSharedConnection() != null) {
+            return transaction.getSharedConnection();
+        }
+        return getConnectionPool().getConnection();
+    }
+
+    public TransactionContext beginTransaction() throws SQLException {
+        return TransactionContext.begin(getConnectionPool().getConnection());
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPools.computeIfAbsent(getUrl(),
+                url -> new ConnectionPool(this::openConnection, ConnectionPoolConfig.fromSystemProperties()));
+    }
+
+    public static void shutdownConnectionPools() {
+        connectionPools.values().forEach(ConnectionPool::close);
+        connectionPools.clear();
+    }
+
+    protected String getUrl() {
+        return "jdbc:mysql://localhost:3306/prod_parkingsystem?serverTimezone=Europe/Paris&useLocalSessionState=true&rewriteBatchedStatements=true";
+    }
+
+    protected Connection openConnection() throws SQLException {
         logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod_parkingsystem?serverTimezone=Europe/Paris","root","mysql");
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("MySQL JDBC driver not found", e);
+        }
+        return DriverManager.getConnection(getUrl(), "root", "mysql");
     }
 
     public void closeConnection(Connection con){
         if(con!=null){
             try {
                 con.close();
-                logger.info("Closing DB connection");
+                logger.debug("Closing DB connection");
             } catch (SQLException e) {
                 logger.error("Error while closing connection",e);
             }
@@ -31,7 +65,7 @@ public class DataBaseConfig {
         if(ps!=null){
             try {
                 ps.close();
-                logger.info("Closing Prepared Statement");
+                logger.debug("Closing Prepared Statement");
             } catch (SQLException e) {
                 logger.error("Error while closing prepared statement",e);
             }
@@ -42,7 +76,7 @@ public class DataBaseConfig {
         if(rs!=null){
             try {
                 rs.close();
-                logger.info("Closing Result Set");
+                logger.debug("Closing Result Set");
             } catch (SQLException e) {
                 logger.error("Error while closing result set",e);
             }
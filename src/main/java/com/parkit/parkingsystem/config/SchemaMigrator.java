@@ -0,0 +1,140 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Applies the versioned scripts of db/migration in order and records them in the schema_version table
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+    private static final String MIGRATIONS_LOCATION = "db/migration/";
+    private static final List<String> MIGRATIONS = List.of(
+            "V1__create_schema.sql",
+            "V2__add_indexes.sql",
+            "V3__create_active_ticket.sql",
+            "V4__add_lots_and_levels.sql",
+            "V5__create_settlement_revenue.sql");
+
+    // Indexes the hot queries rely on, checked at startup
+    private static final Map<String, String> REQUIRED_INDEXES = Map.of(
+            "IDX_TICKET_VEHICLE_IN_TIME", "ticket",
+            "IDX_TICKET_OPEN", "ticket",
+            "IDX_PARKING_TYPE_AVAILABLE", "parking");
+
+    public DataBaseConfig dataBaseConfig;
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    public int migrate() throws Exception {
+        try (
+                Connection con = dataBaseConfig.getConnection();
+                Statement statement = con.createStatement()
+        ) {
+            statement.execute(DBConstants.CREATE_SCHEMA_VERSION_TABLE);
+            int currentVersion = getCurrentVersion(statement);
+            int applied = 0;
+            for (String migration : MIGRATIONS) {
+                int version = versionOf(migration);
+                if (version <= currentVersion) {
+                    continue;
+                }
+                logger.info("Applying schema migration " + migration);
+                for (String sql : readStatements(migration)) {
+                    statement.execute(sql);
+                }
+                try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_SCHEMA_VERSION)) {
+                    ps.setInt(1, version);
+                    ps.setString(2, migration);
+                    ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+                    ps.executeUpdate();
+                }
+                applied++;
+            }
+            logger.info("Database schema is at version " + Math.max(currentVersion, versionOf(MIGRATIONS.get(MIGRATIONS.size() - 1))));
+            return applied;
+        }
+    }
+
+    public boolean verifySchema() {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            DatabaseMetaData metaData = con.getMetaData();
+            boolean valid = true;
+            for (Map.Entry<String, String> requiredIndex : REQUIRED_INDEXES.entrySet()) {
+                if (!getIndexNames(metaData, con.getCatalog(), requiredIndex.getValue()).contains(requiredIndex.getKey())) {
+                    logger.warn("Missing index " + requiredIndex.getKey() + " on table " + requiredIndex.getValue()
+                            + ", queries on this table will scan it");
+                    valid = false;
+                }
+            }
+            return valid;
+        } catch (Exception ex) {
+            logger.error("Error verifying database schema", ex);
+            return false;
+        }
+    }
+
+    private Set<String> getIndexNames(DatabaseMetaData metaData, String catalog, String table) throws Exception {
+        Set<String> indexNames = new HashSet<>();
+        try (ResultSet rs = metaData.getIndexInfo(catalog, null, table, false, false)) {
+            while (rs.next()) {
+                String indexName = rs.getString("INDEX_NAME");
+                if (indexName != null) {
+                    indexNames.add(indexName.toUpperCase());
+                }
+            }
+        }
+        return indexNames;
+    }
+
+    private int getCurrentVersion(Statement statement) throws Exception {
+        try (ResultSet rs = statement.executeQuery(DBConstants.GET_SCHEMA_VERSION)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static int versionOf(String migration) {
+        return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+    }
+
+    private static List<String> readStatements(String migration) throws IOException {
+        String script;
+        try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(MIGRATIONS_LOCATION + migration)) {
+            if (in == null) {
+                throw new IOException("Migration script not found: " + migration);
+            }
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        StringBuilder withoutComments = new StringBuilder();
+        for (String line : script.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                withoutComments.append(line).append('\n');
+            }
+        }
+        List<String> statements = new ArrayList<>();
+        for (String sql : withoutComments.toString().split(";")) {
+            if (!sql.isBlank()) {
+                statements.add(sql.trim());
+            }
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,166 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransactionContext implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("TransactionContext");
+
+    // The transaction of the current thread; DataBaseConfig hands its connection to every DAO call made inside it
+    private static final ThreadLocal<TransactionContext> currentTransaction = new ThreadLocal<>();
+
+    private final Connection connection;
+    private final Connection sharedConnection;
+    private final List<Runnable> afterCommitActions = new ArrayList<>();
+    private final List<Runnable> afterRollbackActions = new ArrayList<>();
+    private final long beginNanos = System.nanoTime();
+    private boolean rollbackOnly;
+
+    private TransactionContext(Connection connection) {
+        this.connection = connection;
+        this.sharedConnection = connection == null ? null : (Connection) Proxy.newProxyInstance(TransactionContext.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    static TransactionContext begin(Connection connection) throws SQLException {
+        if (currentTransaction.get() != null) {
+            throw new IllegalStateException("A transaction is already active on this thread");
+        }
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        TransactionContext transaction = new TransactionContext(connection);
+        currentTransaction.set(transaction);
+        return transaction;
+    }
+
+    // Transaction of a storage without database: only the completion actions are tracked
+    public static TransactionContext begin() {
+        if (currentTransaction.get() != null) {
+            throw new IllegalStateException("A transaction is already active on this thread");
+        }
+        TransactionContext transaction = new TransactionContext(null);
+        currentTransaction.set(transaction);
+        return transaction;
+    }
+
+    public static TransactionContext current() {
+        return currentTransaction.get();
+    }
+
+    public static boolean isActive() {
+        return currentTransaction.get() != null;
+    }
+
+    // Runs the action once the current transaction is committed, or right away when there is none.
+    // Used to keep in-memory state in line with what the database actually holds.
+    public static void afterCommit(Runnable action) {
+        TransactionContext transaction = currentTransaction.get();
+        if (transaction == null) {
+            action.run();
+        } else {
+            transaction.afterCommitActions.add(action);
+        }
+    }
+
+    // Runs the action if the current transaction is rolled back; outside a transaction there is nothing to undo
+    public static void afterRollback(Runnable action) {
+        TransactionContext transaction = currentTransaction.get();
+        if (transaction != null) {
+            transaction.afterRollbackActions.add(action);
+        }
+    }
+
+    // System.nanoTime() when the transaction began: every read made in it may be as old as that
+    public long getBeginNanos() {
+        return beginNanos;
+    }
+
+    // Makes the commit of the current transaction roll it back instead, for a DAO call that wrote part of its change
+    // before failing; outside a transaction every statement is already committed
+    public static void setRollbackOnly() {
+        TransactionContext transaction = currentTransaction.get();
+        if (transaction != null) {
+            transaction.rollbackOnly = true;
+        }
+    }
+
+    // Connection handed to DAOs: closing it is a no-op, the transaction owns the real one.
+    // null for a transaction without database.
+    Connection getSharedConnection() {
+        return sharedConnection;
+    }
+
+    public void commit() throws SQLException {
+        if (rollbackOnly) {
+            rollback();
+            return;
+        }
+        if (connection != null) {
+            connection.commit();
+        }
+        afterRollbackActions.clear();
+        runActions(afterCommitActions);
+    }
+
+    public void rollback() {
+        afterCommitActions.clear();
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back transaction", e);
+            }
+        }
+        runActions(afterRollbackActions);
+    }
+
+    private static void runActions(List<Runnable> actions) {
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                logger.error("Error while running transaction completion action", e);
+            }
+        }
+        actions.clear();
+    }
+
+    @Override
+    public void close() {
+        currentTransaction.remove();
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            logger.error("Error while restoring auto-commit", e);
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing connection", e);
+        }
+    }
+}
@@ -2,12 +2,32 @@ package com.parkit.parkingsystem.constants;
 
 public class DBConstants {
 
-    public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_NEXT_PARKING_SPOT = "select min(p.PARKING_NUMBER) from parking p where p.AVAILABLE = true and p.TYPE = ? and not exists (select 1 from closed_level c where c.LOT_NUMBER = p.LOT_NUMBER and c.LEVEL_NUMBER = p.LEVEL_NUMBER)";
+    public static final String GET_NEXT_PARKING_SPOT_IN_LOT = "select min(p.PARKING_NUMBER) from parking p where p.AVAILABLE = true and p.TYPE = ? and p.LOT_NUMBER = ? and not exists (select 1 from closed_level c where c.LOT_NUMBER = p.LOT_NUMBER and c.LEVEL_NUMBER = p.LEVEL_NUMBER)";
+    public static final String GET_PARKING_SPOTS = "select p.PARKING_NUMBER, p.AVAILABLE, p.TYPE, p.LOT_NUMBER, p.LEVEL_NUMBER, c.LOT_NUMBER is not null from parking p left join closed_level c on c.LOT_NUMBER = p.LOT_NUMBER and c.LEVEL_NUMBER = p.LEVEL_NUMBER";
+    public static final String GET_LEVEL_SPOT_COUNT = "select count(*) from parking where LOT_NUMBER=? and LEVEL_NUMBER=?";
+    public static final String CLOSE_LEVEL = "insert ignore into closed_level(LOT_NUMBER, LEVEL_NUMBER) values(?,?)";
+    public static final String OPEN_LEVEL = "delete from closed_level where LOT_NUMBER=? and LEVEL_NUMBER=?";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String RESERVE_PARKING_SPOT = "update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
-    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
+    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=? and OUT_TIME is null";
+    public static final String UPDATE_TICKET_PRICE = "update ticket set PRICE=? where ID=? and OUT_TIME is not null";
     public static final String UPDATE_TICKET_FOR_TEST = "update ticket set IN_TIME=? where ID=?";
     public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME desc  limit 1";
+    public static final String SAVE_ACTIVE_TICKET = "insert into active_ticket(VEHICLE_REG_NUMBER, TICKET_ID, PARKING_NUMBER, IN_TIME) values(?,?,?,?)";
+    public static final String DELETE_ACTIVE_TICKET = "delete from active_ticket where TICKET_ID=?";
+    public static final String UPDATE_ACTIVE_TICKET_FOR_TEST = "update active_ticket set IN_TIME=? where TICKET_ID=?";
+    public static final String GET_ACTIVE_TICKET = "select a.PARKING_NUMBER, a.TICKET_ID, a.IN_TIME, p.TYPE from active_ticket a, parking p where p.PARKING_NUMBER = a.PARKING_NUMBER and a.VEHICLE_REG_NUMBER=?";
+    public static final String GET_ACTIVE_TICKETS = "select a.VEHICLE_REG_NUMBER, a.PARKING_NUMBER, a.TICKET_ID, a.IN_TIME, p.TYPE from active_ticket a, parking p where p.PARKING_NUMBER = a.PARKING_NUMBER";
+    public static final String GET_CLOSED_TICKETS = "select t.ID, t.PARKING_NUMBER, p.TYPE, t.VEHICLE_REG_NUMBER, t.PRICE, t.IN_TIME, t.OUT_TIME from ticket t, parking p where p.PARKING_NUMBER = t.PARKING_NUMBER and t.ID > ? and t.OUT_TIME is not null order by t.ID limit ?";
+    public static final String GET_ALL_TICKETS = "select t.ID, t.PARKING_NUMBER, p.TYPE, t.VEHICLE_REG_NUMBER, t.PRICE, t.IN_TIME, t.OUT_TIME from ticket t, parking p where p.PARKING_NUMBER = t.PARKING_NUMBER order by t.ID";
+    public static final String SAVE_SETTLEMENT_REVENUE = "insert into settlement_revenue(TYPE, PERIOD_START, PERIOD_END, REVENUE_BEFORE_CENTS, REVENUE_AFTER_CENTS, SETTLED_ON) values(?,?,?,?,?,?)";
     public static final String GET_NB_TICKETS = "select count(*) as ticket_count from ticket where VEHICLE_REG_NUMBER=?";
+    public static final String GET_EXIT_LOOKUP = "select a.PARKING_NUMBER, a.TICKET_ID, a.IN_TIME, p.TYPE, (select count(*) from ticket t where t.VEHICLE_REG_NUMBER = a.VEHICLE_REG_NUMBER) from active_ticket a, parking p where p.PARKING_NUMBER = a.PARKING_NUMBER and a.VEHICLE_REG_NUMBER=?";
+
+    public static final String CREATE_SCHEMA_VERSION_TABLE = "create table if not exists schema_version(VERSION int PRIMARY KEY, DESCRIPTION varchar(100) NOT NULL, INSTALLED_ON DATETIME NOT NULL)";
+    public static final String GET_SCHEMA_VERSION = "select max(VERSION) from schema_version";
+    public static final String SAVE_SCHEMA_VERSION = "insert into schema_version(VERSION, DESCRIPTION, INSTALLED_ON) values(?,?,?)";
 }
@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.constants;
 
+// Hourly rates of the bundled tariff.properties; fares are computed from the tariff in force
 public class Fare {
     public static final double BIKE_RATE_PER_HOUR = 1.0;
     public static final double CAR_RATE_PER_HOUR = 1.5;
@@ -0,0 +1,68 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Open tickets by vehicle, mirror of the active_ticket table so that exits never read the ticket history.
+// Entries are immutable snapshots; callers get a fresh Ticket they are free to close.
+public class ActiveTicketRegistry {
+
+    private volatile Map<String, ActiveTicket> activeTickets = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public void load(Iterable<Ticket> tickets) {
+        Map<String, ActiveTicket> loadedTickets = new ConcurrentHashMap<>();
+        for (Ticket ticket : tickets) {
+            loadedTickets.put(ticket.getVehicleRegNumber(), ActiveTicket.of(ticket));
+        }
+        activeTickets = loadedTickets;
+        loaded = true;
+    }
+
+    // Once loaded, a plate missing from the registry is not parked
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // null when the vehicle is not parked
+    public Ticket get(String vehicleRegNumber) {
+        ActiveTicket activeTicket = activeTickets.get(vehicleRegNumber);
+        return activeTicket == null ? null : activeTicket.toTicket(vehicleRegNumber);
+    }
+
+    public void put(Ticket ticket) {
+        activeTickets.put(ticket.getVehicleRegNumber(), ActiveTicket.of(ticket));
+    }
+
+    public void remove(String vehicleRegNumber) {
+        activeTickets.remove(vehicleRegNumber);
+    }
+
+    public int size() {
+        return activeTickets.size();
+    }
+
+    private record ActiveTicket(int ticketId, int parkingNumber, ParkingType parkingType, long inTime) {
+
+        private static ActiveTicket of(Ticket ticket) {
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            return new ActiveTicket(ticket.getId(), parkingSpot.getId(), parkingSpot.getParkingType(),
+                    ticket.getInTime().getTime());
+        }
+
+        private Ticket toTicket(String vehicleRegNumber) {
+            Ticket ticket = new Ticket();
+            ticket.setId(ticketId);
+            ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(0);
+            ticket.setInTime(new Date(inTime));
+            return ticket;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionContext;
+
+public class JdbcUnitOfWork implements UnitOfWork {
+
+    public DataBaseConfig dataBaseConfig;
+
+    public JdbcUnitOfWork() {
+        this(new DataBaseConfig());
+    }
+
+    public JdbcUnitOfWork(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    // Runs every DAO call made by the work on a single connection and commits them together.
+    // Nested calls join the transaction already open on the current thread.
+    @Override
+    public <T> T execute(Work<T> work) throws Exception {
+        if (TransactionContext.isActive()) {
+            return work.run();
+        }
+        try (TransactionContext transaction = dataBaseConfig.beginTransaction()) {
+            try {
+                T result = work.run();
+                transaction.commit();
+                return result;
+            } catch (Exception e) {
+                transaction.rollback();
+                throw e;
+            }
+        }
+    }
+}
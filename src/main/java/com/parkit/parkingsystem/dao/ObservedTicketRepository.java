@@ -0,0 +1,116 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.TransactionContext;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+// A ticket repository that tells a listener about the tickets saved and closed, once the unit of work that wrote
+// them has committed: a rolled back entry or exit is never seen. Works the same over any backend.
+public class ObservedTicketRepository implements TicketRepository {
+
+    private final TicketRepository ticketRepository;
+    private final TicketListener listener;
+
+    public ObservedTicketRepository(TicketRepository ticketRepository, TicketListener listener) {
+        this.ticketRepository = ticketRepository;
+        this.listener = listener;
+    }
+
+    @Override
+    public void loadActiveTickets() {
+        ticketRepository.loadActiveTickets();
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        if (!ticketRepository.saveTicket(ticket)) {
+            return false;
+        }
+        TransactionContext.afterCommit(() -> listener.ticketSaved(ticket));
+        return true;
+    }
+
+    @Override
+    public boolean[] saveTickets(Collection<Ticket> tickets) {
+        boolean[] outcomes = ticketRepository.saveTickets(tickets);
+        List<Ticket> saved = succeeded(tickets, outcomes);
+        if (!saved.isEmpty()) {
+            TransactionContext.afterCommit(() -> saved.forEach(listener::ticketSaved));
+        }
+        return outcomes;
+    }
+
+    @Override
+    public boolean updateExitTicket(Ticket ticket) {
+        if (!ticketRepository.updateExitTicket(ticket)) {
+            return false;
+        }
+        TransactionContext.afterCommit(() -> listener.ticketClosed(ticket));
+        return true;
+    }
+
+    @Override
+    public boolean[] updateExitTickets(Collection<Ticket> tickets) {
+        boolean[] outcomes = ticketRepository.updateExitTickets(tickets);
+        List<Ticket> closed = succeeded(tickets, outcomes);
+        if (!closed.isEmpty()) {
+            TransactionContext.afterCommit(() -> closed.forEach(listener::ticketClosed));
+        }
+        return outcomes;
+    }
+
+    @Override
+    public boolean[] updateTicketPrices(Collection<Ticket> tickets) {
+        return ticketRepository.updateTicketPrices(tickets);
+    }
+
+    @Override
+    public boolean[] saveSettlementRevenues(Collection<SettlementRevenue> revenues) {
+        return ticketRepository.saveSettlementRevenues(revenues);
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        return ticketRepository.getTicket(vehicleRegNumber);
+    }
+
+    @Override
+    public Ticket getActiveTicket(String vehicleRegNumber) {
+        return ticketRepository.getActiveTicket(vehicleRegNumber);
+    }
+
+    @Override
+    public int getNbTickets(String vehicleRegNumber) {
+        return ticketRepository.getNbTickets(vehicleRegNumber);
+    }
+
+    @Override
+    public ExitLookup getExitLookup(String vehicleRegNumber) {
+        return ticketRepository.getExitLookup(vehicleRegNumber);
+    }
+
+    @Override
+    public List<Ticket> getClosedTickets(int afterTicketId, int limit) {
+        return ticketRepository.getClosedTickets(afterTicketId, limit);
+    }
+
+    @Override
+    public long forEachTicket(Consumer<Ticket> action) {
+        return ticketRepository.forEachTicket(action);
+    }
+
+    private static List<Ticket> succeeded(Collection<Ticket> tickets, boolean[] outcomes) {
+        List<Ticket> succeeded = new ArrayList<>();
+        int row = 0;
+        for (Ticket ticket : tickets) {
+            if (outcomes[row++]) {
+                succeeded.add(ticket);
+            }
+        }
+        return succeeded;
+    }
+}
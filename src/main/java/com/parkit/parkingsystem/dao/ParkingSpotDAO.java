@@ -1,6 +1,7 @@
 package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionContext;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
@@ -11,20 +12,69 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotRepository {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+    public ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
 
+    @Override
+    public boolean loadParkingSpotIndex(){
+        try (
+                Connection con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+                ResultSet rs = ps.executeQuery()
+        ) {
+            //PARKING_NUMBER, AVAILABLE, TYPE, LOT_NUMBER, LEVEL_NUMBER, closed level
+            List<ParkingSpot> parkingSpots = new ArrayList<>();
+            Set<List<Integer>> closedLevels = new HashSet<>();
+            while (rs.next()) {
+                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2),
+                        rs.getInt(4), rs.getInt(5));
+                parkingSpots.add(parkingSpot);
+                if (rs.getBoolean(6)) {
+                    closedLevels.add(List.of(parkingSpot.getLotNumber(), parkingSpot.getLevelNumber()));
+                }
+            }
+            parkingSpotIndex.load(parkingSpots);
+            for (List<Integer> closedLevel : closedLevels) {
+                parkingSpotIndex.setLevelOpen(closedLevel.get(0), closedLevel.get(1), false);
+            }
+            logger.info("Loaded availability of " + parkingSpots.size() + " parking spots, " + closedLevels.size()
+                    + " closed levels");
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error loading parking spots availability", ex);
+            return false;
+        }
+    }
+
+    @Override
     public int getNextAvailableSlot(ParkingType parkingType){
+        if (parkingSpotIndex.isLoaded()) {
+            return parkingSpotIndex.nextAvailable(parkingType);
+        }
+        return getNextAvailableSlot(ParkingSpot.ANY_LOT, parkingType);
+    }
+
+    // Lowest available spot of the type in an open level of the lot, read from the parking table
+    private int getNextAvailableSlot(int lotNumber, ParkingType parkingType) {
         int result = -1;
 
         try (
                 Connection con = dataBaseConfig.getConnection();
-                PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT)
+                PreparedStatement ps = con.prepareStatement(lotNumber == ParkingSpot.ANY_LOT
+                        ? DBConstants.GET_NEXT_PARKING_SPOT : DBConstants.GET_NEXT_PARKING_SPOT_IN_LOT)
         ) {
             ps.setString(1, parkingType.toString());
+            if (lotNumber != ParkingSpot.ANY_LOT) {
+                ps.setInt(2, lotNumber);
+            }
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -37,6 +87,74 @@ public class ParkingSpotDAO {
         return result;
     }
 
+    // Counted by the index; unknown (-1) when it could not be loaded, rather than a query on every poll
+    @Override
+    public int getAvailableCount(ParkingType parkingType) {
+        return parkingSpotIndex.isLoaded() ? parkingSpotIndex.availableCount(parkingType) : -1;
+    }
+
+    @Override
+    public int getAvailableCount(int lotNumber, ParkingType parkingType) {
+        return parkingSpotIndex.isLoaded() ? parkingSpotIndex.availableCount(lotNumber, parkingType) : -1;
+    }
+
+    @Override
+    public int getCapacity(ParkingType parkingType) {
+        return parkingSpotIndex.isLoaded() ? parkingSpotIndex.capacity(parkingType) : -1;
+    }
+
+    @Override
+    public ParkingSpot allocateParkingSpot(ParkingType parkingType){
+        return allocateParkingSpot(ParkingSpot.ANY_LOT, parkingType);
+    }
+
+    // Takes a free spot of the given type for the current transaction. The spot is claimed in the index first and
+    // then marked unavailable in the parking table only if it still is available there, so that two gates never
+    // end up with the same spot. Returns null when no spot of this type is left in the lot.
+    @Override
+    public ParkingSpot allocateParkingSpot(int lotNumber, ParkingType parkingType){
+        while (true) {
+            boolean fromIndex = parkingSpotIndex.isLoaded();
+            int parkingNumber = fromIndex ? parkingSpotIndex.claim(lotNumber, parkingType) : getNextAvailableSlot(lotNumber, parkingType);
+            if (parkingNumber <= 0) {
+                return null;
+            }
+            ParkingSpot located = fromIndex ? parkingSpotIndex.locate(parkingNumber, false) : null;
+            ParkingSpot parkingSpot = located != null ? located : new ParkingSpot(parkingNumber, parkingType, false);
+            try {
+                if (reserveParking(parkingSpot)) {
+                    if (fromIndex) {
+                        TransactionContext.afterRollback(() -> parkingSpotIndex.release(parkingNumber, parkingType));
+                    }
+                    return parkingSpot;
+                }
+                //already taken in the parking table: the index is corrected to unavailable, its count included, and
+                //learns of the spot again from the updateParking that frees it; the next spot is tried
+                if (fromIndex) {
+                    parkingSpotIndex.update(parkingNumber, parkingType, false);
+                }
+                logger.warn("Parking spot " + parkingNumber + " was already taken, trying the next one");
+            } catch (Exception ex) {
+                if (fromIndex) {
+                    parkingSpotIndex.release(parkingNumber, parkingType);
+                }
+                logger.error("Error allocating parking spot for parking type: " + parkingType, ex);
+                throw new RuntimeException("Error allocating parking spot", ex);
+            }
+        }
+    }
+
+    private boolean reserveParking(ParkingSpot parkingSpot) throws Exception {
+        try (
+            Connection con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.RESERVE_PARKING_SPOT)
+        ){
+            ps.setInt(1, parkingSpot.getId());
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    @Override
     public boolean updateParking(ParkingSpot parkingSpot){
         try (
             Connection con = dataBaseConfig.getConnection();
@@ -46,6 +164,12 @@ public class ParkingSpotDAO {
             ps.setInt(2, parkingSpot.getId());
 
             int updateRowCount = ps.executeUpdate();
+            if (updateRowCount == 1) {
+                int parkingNumber = parkingSpot.getId();
+                ParkingType parkingType = parkingSpot.getParkingType();
+                boolean isAvailable = parkingSpot.isAvailable();
+                TransactionContext.afterCommit(() -> parkingSpotIndex.update(parkingNumber, parkingType, isAvailable));
+            }
             return updateRowCount == 1;
         }catch (Exception ex){
             logger.error("Error updating parking info",ex);
@@ -53,4 +177,33 @@ public class ParkingSpotDAO {
         }
     }
 
+    // Persisted in closed_level, so that a closed level stays closed after a restart
+    @Override
+    public boolean setLevelOpen(int lotNumber, int levelNumber, boolean open) {
+        try (
+                Connection con = dataBaseConfig.getConnection();
+                PreparedStatement countPs = con.prepareStatement(DBConstants.GET_LEVEL_SPOT_COUNT);
+                PreparedStatement ps = con.prepareStatement(open ? DBConstants.OPEN_LEVEL : DBConstants.CLOSE_LEVEL)
+        ) {
+            //a level without spots is not a level: nothing is written for it
+            countPs.setInt(1, lotNumber);
+            countPs.setInt(2, levelNumber);
+            try (ResultSet rs = countPs.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) == 0) {
+                    logger.error("No parking spot on level " + levelNumber + " of lot " + lotNumber);
+                    return false;
+                }
+            }
+            ps.setInt(1, lotNumber);
+            ps.setInt(2, levelNumber);
+            ps.executeUpdate();
+            TransactionContext.afterCommit(() -> parkingSpotIndex.setLevelOpen(lotNumber, levelNumber, open));
+            logger.info((open ? "Opened" : "Closed") + " level " + levelNumber + " of lot " + lotNumber);
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error " + (open ? "opening" : "closing") + " level " + levelNumber + " of lot " + lotNumber, ex);
+            return false;
+        }
+    }
+
 }
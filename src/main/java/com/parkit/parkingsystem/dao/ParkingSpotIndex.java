@@ -0,0 +1,291 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Free spots sharded per lot, level and parking type, bit n of a shard set when PARKING_NUMBER n is available.
+// Every claim is a single CAS on one 64-spot word of one shard, so concurrent gates never hand out the same spot
+// twice and never wait on a lock; claims of a type start at a different shard for each gate thread, so that gates
+// spread over the lots and levels instead of all contending on the first words of the first one. Each shard also
+// counts its free spots, changed only by the CAS that actually flips a bit, so that displays can poll the count
+// without scanning the words. A closed level keeps its spots, their releases included, but hands none out.
+public class ParkingSpotIndex {
+
+    private static final Comparator<ShardKey> SHARD_ORDER = Comparator.comparingInt(ShardKey::lotNumber)
+            .thenComparingInt(ShardKey::levelNumber)
+            .thenComparing(ShardKey::parkingType);
+
+    private volatile Shards shards = new Shards(new SpotStripe[0], new SpotStripe[ParkingType.values().length][]);
+    private volatile boolean loaded;
+
+    public void load(Iterable<ParkingSpot> parkingSpots) {
+        Map<ShardKey, List<ParkingSpot>> spotsByShard = new TreeMap<>(SHARD_ORDER);
+        int maxParkingNumber = 0;
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            ShardKey key = new ShardKey(parkingSpot.getLotNumber(), parkingSpot.getLevelNumber(), parkingSpot.getParkingType());
+            spotsByShard.computeIfAbsent(key, k -> new ArrayList<>()).add(parkingSpot);
+            maxParkingNumber = Math.max(maxParkingNumber, parkingSpot.getId());
+        }
+        SpotStripe[] stripeOfNumber = new SpotStripe[maxParkingNumber + 1];
+        List<List<SpotStripe>> stripesByType = new ArrayList<>();
+        for (int i = 0; i < ParkingType.values().length; i++) {
+            stripesByType.add(new ArrayList<>());
+        }
+        for (Map.Entry<ShardKey, List<ParkingSpot>> shard : spotsByShard.entrySet()) {
+            SpotStripe stripe = new SpotStripe(shard.getKey(), shard.getValue());
+            for (ParkingSpot parkingSpot : shard.getValue()) {
+                if (parkingSpot.getId() > 0) {
+                    stripeOfNumber[parkingSpot.getId()] = stripe;
+                }
+            }
+            stripesByType.get(shard.getKey().parkingType().ordinal()).add(stripe);
+        }
+        SpotStripe[][] typeStripes = new SpotStripe[stripesByType.size()][];
+        for (int i = 0; i < typeStripes.length; i++) {
+            typeStripes[i] = stripesByType.get(i).toArray(new SpotStripe[0]);
+        }
+        shards = new Shards(stripeOfNumber, typeStripes);
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Lowest available spot of the type in the first open level that has one, -1 when none
+    public int nextAvailable(ParkingType parkingType) {
+        for (SpotStripe stripe : shards.stripesOf(parkingType)) {
+            if (stripe.open) {
+                int parkingNumber = stripe.peek();
+                if (parkingNumber > 0) {
+                    return parkingNumber;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Takes an available spot of the type out of the index, in any lot; -1 when the type is full
+    public int claim(ParkingType parkingType) {
+        return claim(ParkingSpot.ANY_LOT, parkingType);
+    }
+
+    // Takes an available spot of the type in an open level of the lot, the lowest one of the shard it comes from;
+    // -1 when there is none
+    public int claim(int lotNumber, ParkingType parkingType) {
+        SpotStripe[] stripes = shards.stripesOf(parkingType);
+        int shardCount = stripes.length;
+        if (shardCount == 0) {
+            return -1;
+        }
+        //a random first shard spreads the gates, virtual threads included, whose ids are sequential
+        int shard = shardCount == 1 ? 0 : ThreadLocalRandom.current().nextInt(shardCount);
+        for (int tried = 0; tried < shardCount; tried++) {
+            SpotStripe stripe = stripes[shard];
+            if (stripe.open && (lotNumber == ParkingSpot.ANY_LOT || stripe.key.lotNumber() == lotNumber)) {
+                int parkingNumber = stripe.claim();
+                if (parkingNumber > 0) {
+                    return parkingNumber;
+                }
+            }
+            if (++shard == shardCount) {
+                shard = 0;
+            }
+        }
+        return -1;
+    }
+
+    // Free spots of the type in open levels, spots claimed by a unit of work still in progress excluded
+    public int availableCount(ParkingType parkingType) {
+        return availableCount(ParkingSpot.ANY_LOT, parkingType);
+    }
+
+    public int availableCount(int lotNumber, ParkingType parkingType) {
+        int available = 0;
+        for (SpotStripe stripe : shards.stripesOf(parkingType)) {
+            if (stripe.open && (lotNumber == ParkingSpot.ANY_LOT || stripe.key.lotNumber() == lotNumber)) {
+                available += stripe.available.get();
+            }
+        }
+        return available;
+    }
+
+    // Spots of the type, free or not, closed levels included
+    public int capacity(ParkingType parkingType) {
+        int capacity = 0;
+        for (SpotStripe stripe : shards.stripesOf(parkingType)) {
+            capacity += stripe.capacity;
+        }
+        return capacity;
+    }
+
+    // Opens or closes every shard of the level; false when the index has no spot on that level
+    public boolean setLevelOpen(int lotNumber, int levelNumber, boolean open) {
+        boolean found = false;
+        for (SpotStripe[] stripes : shards.stripesByType) {
+            for (SpotStripe stripe : stripes) {
+                if (stripe.key.lotNumber() == lotNumber && stripe.key.levelNumber() == levelNumber) {
+                    stripe.open = open;
+                    found = true;
+                }
+            }
+        }
+        return found;
+    }
+
+    public boolean isLevelOpen(int lotNumber, int levelNumber) {
+        for (SpotStripe[] stripes : shards.stripesByType) {
+            for (SpotStripe stripe : stripes) {
+                if (stripe.key.lotNumber() == lotNumber && stripe.key.levelNumber() == levelNumber) {
+                    return stripe.open;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Lot and level number of every closed level
+    public Set<List<Integer>> closedLevels() {
+        Set<List<Integer>> closedLevels = new HashSet<>();
+        for (SpotStripe[] stripes : shards.stripesByType) {
+            for (SpotStripe stripe : stripes) {
+                if (!stripe.open) {
+                    closedLevels.add(List.of(stripe.key.lotNumber(), stripe.key.levelNumber()));
+                }
+            }
+        }
+        return closedLevels;
+    }
+
+    // The spot with its lot and level, null when the number is not a spot of the index
+    public ParkingSpot locate(int parkingNumber, boolean isAvailable) {
+        SpotStripe stripe = shards.stripeOf(parkingNumber);
+        return stripe == null ? null : new ParkingSpot(parkingNumber, stripe.key.parkingType(), isAvailable,
+                stripe.key.lotNumber(), stripe.key.levelNumber());
+    }
+
+    public boolean isAvailable(int parkingNumber, ParkingType parkingType) {
+        SpotStripe stripe = shards.stripeOf(parkingNumber);
+        return stripe != null && stripe.key.parkingType() == parkingType && stripe.get(parkingNumber);
+    }
+
+    public void release(int parkingNumber, ParkingType parkingType) {
+        update(parkingNumber, parkingType, true);
+    }
+
+    public void update(int parkingNumber, ParkingType parkingType, boolean isAvailable) {
+        SpotStripe stripe = shards.stripeOf(parkingNumber);
+        if (stripe != null && stripe.key.parkingType() == parkingType) {
+            stripe.set(parkingNumber, isAvailable);
+        }
+    }
+
+    private record ShardKey(int lotNumber, int levelNumber, ParkingType parkingType) {
+    }
+
+    // Published as a whole by load(): the shard of every PARKING_NUMBER, and the shards of each type by lot and level
+    private record Shards(SpotStripe[] stripeOfNumber, SpotStripe[][] stripesByType) {
+
+        private Shards {
+            for (int i = 0; i < stripesByType.length; i++) {
+                if (stripesByType[i] == null) {
+                    stripesByType[i] = new SpotStripe[0];
+                }
+            }
+        }
+
+        private SpotStripe stripeOf(int parkingNumber) {
+            return parkingNumber > 0 && parkingNumber < stripeOfNumber.length ? stripeOfNumber[parkingNumber] : null;
+        }
+
+        private SpotStripe[] stripesOf(ParkingType parkingType) {
+            return stripesByType[parkingType.ordinal()];
+        }
+    }
+
+    private static final class SpotStripe {
+        private final ShardKey key;
+        // Bit i of the words is PARKING_NUMBER base + i; base is word aligned
+        private final int base;
+        private final AtomicLongArray words;
+        private final AtomicInteger available = new AtomicInteger();
+        private final int capacity;
+        private volatile boolean open = true;
+
+        private SpotStripe(ShardKey key, List<ParkingSpot> parkingSpots) {
+            int minParkingNumber = Integer.MAX_VALUE;
+            int maxParkingNumber = 0;
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                minParkingNumber = Math.min(minParkingNumber, parkingSpot.getId());
+                maxParkingNumber = Math.max(maxParkingNumber, parkingSpot.getId());
+            }
+            this.key = key;
+            this.base = Math.max(minParkingNumber, 0) & ~63;
+            this.words = new AtomicLongArray(((maxParkingNumber - base) >> 6) + 1);
+            this.capacity = parkingSpots.size();
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                set(parkingSpot.getId(), parkingSpot.isAvailable());
+            }
+        }
+
+        private int peek() {
+            for (int i = 0; i < words.length(); i++) {
+                long word = words.get(i);
+                if (word != 0) {
+                    return base + (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+            }
+            return -1;
+        }
+
+        private int claim() {
+            for (int i = 0; i < words.length(); i++) {
+                long word;
+                while ((word = words.get(i)) != 0) {
+                    long lowestBit = word & -word;
+                    if (words.compareAndSet(i, word, word & ~lowestBit)) {
+                        available.decrementAndGet();
+                        return base + (i << 6) + Long.numberOfTrailingZeros(lowestBit);
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private boolean get(int parkingNumber) {
+            int offset = parkingNumber - base;
+            int wordIndex = offset >> 6;
+            return parkingNumber > 0 && offset >= 0 && wordIndex < words.length()
+                    && (words.get(wordIndex) & (1L << offset)) != 0;
+        }
+
+        private void set(int parkingNumber, boolean isAvailable) {
+            int offset = parkingNumber - base;
+            int wordIndex = offset >> 6;
+            if (parkingNumber <= 0 || offset < 0 || wordIndex >= words.length()) {
+                return;
+            }
+            long bit = 1L << offset;
+            long word;
+            long updated;
+            do {
+                word = words.get(wordIndex);
+                updated = isAvailable ? word | bit : word & ~bit;
+            } while (word != updated && !words.compareAndSet(wordIndex, word, updated));
+            if (word != updated) {
+                available.addAndGet(isAvailable ? 1 : -1);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+// Parking spots and their availability, whatever the storage behind them
+public interface ParkingSpotRepository {
+
+    // Loads what the repository keeps in memory; false when it could not, lookups then go to the storage
+    boolean loadParkingSpotIndex();
+
+    // Lowest available spot of the type, without reserving it; -1 or 0 when there is none
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    // Reserves a free spot of the type for the current unit of work, in any lot; null when the type is full
+    ParkingSpot allocateParkingSpot(ParkingType parkingType);
+
+    // Same in one lot, ParkingSpot.ANY_LOT for any; null when the lot has no open spot of the type left
+    ParkingSpot allocateParkingSpot(int lotNumber, ParkingType parkingType);
+
+    boolean updateParking(ParkingSpot parkingSpot);
+
+    // Free spots of the type in open levels, answered from memory without touching the storage; -1 when not known
+    int getAvailableCount(ParkingType parkingType);
+
+    int getAvailableCount(int lotNumber, ParkingType parkingType);
+
+    // Spots of the type, free or not; -1 when not known
+    int getCapacity(ParkingType parkingType);
+
+    // A closed level hands out no spot, the vehicles parked there can still leave; false when the lot has no such
+    // level or it could not be changed
+    boolean setLevelOpen(int lotNumber, int levelNumber, boolean open);
+}
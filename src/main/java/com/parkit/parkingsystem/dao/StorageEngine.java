@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.dao.memory.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.memory.InMemoryTicketRepository;
+import com.parkit.parkingsystem.dao.memory.InMemoryUnitOfWork;
+import com.parkit.parkingsystem.dao.memory.ParkingJournal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// The repositories of one storage backend and the unit of work that spans them.
+// Selected at startup with -Dparkit.storage=jdbc|memory|journaled (default jdbc).
+// journal is only set for the journaled backend.
+public record StorageEngine(Type type, ParkingSpotRepository parkingSpotRepository, TicketRepository ticketRepository,
+                            UnitOfWork unitOfWork, ParkingJournal journal) implements AutoCloseable {
+
+    public enum Type {
+        JDBC, MEMORY, JOURNALED
+    }
+
+    public StorageEngine(Type type, ParkingSpotRepository parkingSpotRepository, TicketRepository ticketRepository,
+                         UnitOfWork unitOfWork) {
+        this(type, parkingSpotRepository, ticketRepository, unitOfWork, null);
+    }
+
+    public static StorageEngine fromSystemProperties() throws IOException {
+        Type type = Type.valueOf(System.getProperty("parkit.storage", "jdbc").toUpperCase(Locale.ROOT));
+        int carSpots = Integer.getInteger("parkit.storage.memory.carSpots", 3);
+        int bikeSpots = Integer.getInteger("parkit.storage.memory.bikeSpots", 2);
+        int lots = Integer.getInteger("parkit.storage.memory.lots", 1);
+        int levels = Integer.getInteger("parkit.storage.memory.levels", 1);
+        return switch (type) {
+            case JDBC -> jdbc();
+            case MEMORY -> inMemory(InMemoryParkingSpotRepository.withLayout(lots, levels, carSpots, bikeSpots));
+            case JOURNALED -> journaled(InMemoryParkingSpotRepository.withLayout(lots, levels, carSpots, bikeSpots),
+                    Path.of(System.getProperty("parkit.journal.dir", "data/journal")),
+                    Boolean.parseBoolean(System.getProperty("parkit.journal.fsync", "true")),
+                    Long.getLong("parkit.journal.snapshotIntervalSeconds", 60) * 1000);
+        };
+    }
+
+    public static StorageEngine jdbc() {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        TicketDAO ticketDAO = new TicketDAO();
+        return new StorageEngine(Type.JDBC, parkingSpotDAO, ticketDAO, new JdbcUnitOfWork(ticketDAO.dataBaseConfig));
+    }
+
+    // Nothing survives a restart: for kiosks, demos and tests that do not need a MySQL server
+    public static StorageEngine inMemory(int carSpots, int bikeSpots) {
+        return inMemory(InMemoryParkingSpotRepository.withLayout(carSpots, bikeSpots));
+    }
+
+    public static StorageEngine inMemory(InMemoryParkingSpotRepository parkingSpotRepository) {
+        return new StorageEngine(Type.MEMORY, parkingSpotRepository, new InMemoryTicketRepository(), new InMemoryUnitOfWork());
+    }
+
+    // In-memory repositories restored from, and recorded to, the journal and snapshot in the given directory
+    public static StorageEngine journaled(int carSpots, int bikeSpots, Path directory, boolean fsync,
+                                          long snapshotIntervalMillis) throws IOException {
+        return journaled(InMemoryParkingSpotRepository.withLayout(carSpots, bikeSpots), directory, fsync, snapshotIntervalMillis);
+    }
+
+    public static StorageEngine journaled(InMemoryParkingSpotRepository parkingSpotRepository, Path directory, boolean fsync,
+                                          long snapshotIntervalMillis) throws IOException {
+        InMemoryTicketRepository ticketRepository = new InMemoryTicketRepository();
+        ParkingJournal journal = ParkingJournal.open(directory, parkingSpotRepository, ticketRepository, fsync, snapshotIntervalMillis);
+        return new StorageEngine(Type.JOURNALED, parkingSpotRepository, ticketRepository, new InMemoryUnitOfWork(journal), journal);
+    }
+
+    // Same backend, with the listener told about every committed entry and exit
+    public StorageEngine withTicketListener(TicketListener listener) {
+        return new StorageEngine(type, parkingSpotRepository, new ObservedTicketRepository(ticketRepository, listener),
+                unitOfWork, journal);
+    }
+
+    public void load() {
+        parkingSpotRepository.loadParkingSpotIndex();
+        ticketRepository.loadActiveTickets();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionContext;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
@@ -8,31 +9,52 @@ import com.parkit.parkingsystem.model.Ticket;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
-public class TicketDAO {
+public class TicketDAO implements TicketRepository {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    private static final int BATCH_SIZE = 500;
+    private static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+    public VehicleVisitCache vehicleVisitCache = new VehicleVisitCache();
+    public ActiveTicketRegistry activeTicketRegistry = new ActiveTicketRegistry();
+
+    @FunctionalInterface
+    private interface RowBinder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
 
+    // An open ticket also becomes the vehicle's active session; run it in a UnitOfWork for both inserts to be atomic
+    @Override
     public boolean saveTicket(Ticket ticket){
+        if (ticket.getOutTime() == null) {
+            return saveActiveTicket(ticket);
+        }
         try (
                 Connection con = dataBaseConfig.getConnection();
                 PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
                 //PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
         ) {
-
-            ps.setInt(1,ticket.getParkingSpot().getId());
-            ps.setString(2, ticket.getVehicleRegNumber());
-            ps.setDouble(3, ticket.getPrice());
-            ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
-            ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new Timestamp(ticket.getOutTime().getTime())) );
-
-            return ps.executeUpdate() > 0;
+            bindSaveTicket(ps, ticket);
+            if (ps.executeUpdate() > 0) {
+                String vehicleRegNumber = ticket.getVehicleRegNumber();
+                TransactionContext.afterCommit(() -> vehicleVisitCache.increment(vehicleRegNumber));
+                return true;
+            }
+            return false;
 
         }catch (Exception ex){
             logger.error("Error fetching next available slot",ex);
@@ -40,6 +62,179 @@ public class TicketDAO {
         }
     }
 
+    private boolean saveActiveTicket(Ticket ticket) {
+        try (
+                Connection con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)
+        ) {
+            bindSaveTicket(ps, ticket);
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    return false;
+                }
+                ticket.setId(keys.getInt(1));
+            }
+            //the primary key on the plate refuses a second open ticket for a vehicle already parked
+            try (PreparedStatement activePs = con.prepareStatement(DBConstants.SAVE_ACTIVE_TICKET)) {
+                //VEHICLE_REG_NUMBER, TICKET_ID, PARKING_NUMBER, IN_TIME
+                activePs.setString(1, ticket.getVehicleRegNumber());
+                activePs.setInt(2, ticket.getId());
+                activePs.setInt(3, ticket.getParkingSpot().getId());
+                activePs.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+                if (activePs.executeUpdate() == 0) {
+                    return false;
+                }
+            }
+            String vehicleRegNumber = ticket.getVehicleRegNumber();
+            TransactionContext.afterCommit(() -> {
+                vehicleVisitCache.increment(vehicleRegNumber);
+                activeTicketRegistry.put(ticket);
+            });
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error saving ticket for vehicle: {}", ticket.getVehicleRegNumber(), ex);
+            return false;
+        }
+    }
+
+    // Inserts closed tickets into the history with JDBC batching; outcome i tells whether the i-th ticket was saved.
+    // Open tickets are refused, they go through saveTicket to become an active session.
+    @Override
+    public boolean[] saveTickets(Collection<Ticket> tickets) {
+        boolean[] outcomes = executeBatch(DBConstants.SAVE_TICKET, tickets, this::bindSaveClosedTicket);
+        List<String> savedVehicles = new ArrayList<>();
+        int row = 0;
+        for (Ticket ticket : tickets) {
+            if (outcomes[row++]) {
+                savedVehicles.add(ticket.getVehicleRegNumber());
+            }
+        }
+        TransactionContext.afterCommit(() -> savedVehicles.forEach(vehicleVisitCache::increment));
+        return outcomes;
+    }
+
+    // Closes the tickets with JDBC batching; outcome i tells whether the i-th ticket was updated
+    @Override
+    public boolean[] updateExitTickets(Collection<Ticket> tickets) {
+        boolean[] outcomes = executeBatch(DBConstants.UPDATE_TICKET, tickets, this::bindUpdateExitTicket);
+        List<Ticket> closedTickets = new ArrayList<>();
+        int row = 0;
+        for (Ticket ticket : tickets) {
+            if (outcomes[row++]) {
+                closedTickets.add(ticket);
+            }
+        }
+        if (!closedTickets.isEmpty()) {
+            //a ticket with no active session left is not a failure of the update; an already closed one failed it above
+            executeBatch(DBConstants.DELETE_ACTIVE_TICKET, closedTickets, (ps, ticket) -> ps.setInt(1, ticket.getId()));
+            TransactionContext.afterCommit(() -> closedTickets.forEach(
+                    ticket -> activeTicketRegistry.remove(ticket.getVehicleRegNumber())));
+        }
+        return outcomes;
+    }
+
+    // Re-priced closed tickets with JDBC batching; open tickets are not matched and fail their row
+    @Override
+    public boolean[] updateTicketPrices(Collection<Ticket> tickets) {
+        return executeBatch(DBConstants.UPDATE_TICKET_PRICE, tickets, (ps, ticket) -> {
+            ps.setDouble(1, ticket.getPrice());
+            ps.setInt(2, ticket.getId());
+        });
+    }
+
+    // One row per parking type, in one batch
+    @Override
+    public boolean[] saveSettlementRevenues(Collection<SettlementRevenue> revenues) {
+        Timestamp settledOn = new Timestamp(System.currentTimeMillis());
+        return executeBatch(DBConstants.SAVE_SETTLEMENT_REVENUE, revenues, (ps, revenue) -> {
+            //TYPE, PERIOD_START, PERIOD_END, REVENUE_BEFORE_CENTS, REVENUE_AFTER_CENTS, SETTLED_ON
+            ps.setString(1, revenue.parkingType().toString());
+            ps.setTimestamp(2, new Timestamp(revenue.fromMillis()));
+            ps.setTimestamp(3, new Timestamp(revenue.toMillis()));
+            ps.setLong(4, revenue.revenueBeforeCents());
+            ps.setLong(5, revenue.revenueAfterCents());
+            ps.setTimestamp(6, settledOn);
+        });
+    }
+
+    private void bindSaveClosedTicket(PreparedStatement ps, Ticket ticket) throws SQLException {
+        if (ticket.getOutTime() == null) {
+            throw new IllegalArgumentException("Open ticket for vehicle " + ticket.getVehicleRegNumber() + " cannot be saved in a batch");
+        }
+        bindSaveTicket(ps, ticket);
+    }
+
+    private void bindSaveTicket(PreparedStatement ps, Ticket ticket) throws SQLException {
+        //PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
+        ps.setInt(1,ticket.getParkingSpot().getId());
+        ps.setString(2, ticket.getVehicleRegNumber());
+        ps.setDouble(3, ticket.getPrice());
+        ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+        ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new Timestamp(ticket.getOutTime().getTime())) );
+    }
+
+    private void bindUpdateExitTicket(PreparedStatement ps, Ticket ticket) throws SQLException {
+        //PRICE, OUT_TIME, ID
+        ps.setDouble(1, ticket.getPrice());
+        ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+        ps.setInt(3,ticket.getId());
+    }
+
+    private <T> boolean[] executeBatch(String sql, Collection<T> rows, RowBinder<T> binder) {
+        boolean[] outcomes = new boolean[rows.size()];
+        try (
+                Connection con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(sql)
+        ) {
+            int[] batchRows = new int[BATCH_SIZE];
+            int batchSize = 0;
+            int row = 0;
+            for (T value : rows) {
+                try {
+                    binder.bind(ps, value);
+                    ps.addBatch();
+                    batchRows[batchSize++] = row;
+                } catch (Exception ex) {
+                    //an incomplete row only fails itself
+                    logger.error("Invalid row " + row + " of batch", ex);
+                    ps.clearParameters();
+                }
+                row++;
+                if (batchSize == BATCH_SIZE) {
+                    flushBatch(ps, batchRows, batchSize, outcomes);
+                    batchSize = 0;
+                }
+            }
+            if (batchSize > 0) {
+                flushBatch(ps, batchRows, batchSize, outcomes);
+            }
+        } catch (Exception ex) {
+            logger.error("Error executing batch", ex);
+        }
+        return outcomes;
+    }
+
+    private void flushBatch(PreparedStatement ps, int[] batchRows, int batchSize, boolean[] outcomes) throws SQLException {
+        int[] updateCounts;
+        try {
+            updateCounts = ps.executeBatch();
+        } catch (BatchUpdateException ex) {
+            logger.error("Error executing batch", ex);
+            updateCounts = ex.getUpdateCounts() == null ? new int[0] : ex.getUpdateCounts();
+        } finally {
+            ps.clearBatch();
+        }
+        //rewritten multi-row inserts report SUCCESS_NO_INFO instead of a row count
+        for (int i = 0; i < batchSize; i++) {
+            outcomes[batchRows[i]] = i < updateCounts.length
+                    && (updateCounts[i] > 0 || updateCounts[i] == Statement.SUCCESS_NO_INFO);
+        }
+    }
+
+    @Override
     public Ticket getTicket(String vehicleRegNumber) {
         Ticket ticket = null;
         try (
@@ -67,23 +262,153 @@ public class TicketDAO {
         return ticket;
     }
 
+    // Open ticket of a parked vehicle, null when the vehicle is not parked. Never reads the ticket history.
+    @Override
+    public Ticket getActiveTicket(String vehicleRegNumber) {
+        if (activeTicketRegistry.isLoaded()) {
+            return activeTicketRegistry.get(vehicleRegNumber);
+        }
+        Ticket ticket = null;
+        try (
+                Connection con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_ACTIVE_TICKET)
+                //PARKING_NUMBER, TICKET_ID, IN_TIME, TYPE
+        ) {
+            ps.setString(1, vehicleRegNumber);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    ticket = new Ticket();
+                    ticket.setParkingSpot(new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(4)), false));
+                    ticket.setId(rs.getInt(2));
+                    ticket.setVehicleRegNumber(vehicleRegNumber);
+                    ticket.setPrice(0);
+                    ticket.setInTime(rs.getTimestamp(3));
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error fetching active ticket for vehicle: {}", vehicleRegNumber, ex);
+        }
+        return ticket;
+    }
+
+    @Override
+    public void loadActiveTickets() {
+        List<Ticket> activeTickets = new ArrayList<>();
+        try (
+                Connection con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_ACTIVE_TICKETS);
+                ResultSet rs = ps.executeQuery()
+                //VEHICLE_REG_NUMBER, PARKING_NUMBER, TICKET_ID, IN_TIME, TYPE
+        ) {
+            while (rs.next()) {
+                Ticket ticket = new Ticket();
+                ticket.setVehicleRegNumber(rs.getString(1));
+                ticket.setParkingSpot(new ParkingSpot(rs.getInt(2), ParkingType.valueOf(rs.getString(5)), false));
+                ticket.setId(rs.getInt(3));
+                ticket.setInTime(rs.getTimestamp(4));
+                activeTickets.add(ticket);
+            }
+            activeTicketRegistry.load(activeTickets);
+            logger.info("Loaded {} active tickets", activeTickets.size());
+        } catch (Exception ex) {
+            logger.error("Error loading active tickets, exits will be looked up in the database", ex);
+        }
+    }
+
+    // Closes the ticket in the history and ends the vehicle's active session. False when another exit closed the
+    // ticket first, with nothing of the exit committed, instead of releasing a spot that may be taken again by now.
+    @Override
     public boolean updateExitTicket(Ticket ticket) {
         try (
                 Connection con = dataBaseConfig.getConnection();
                 PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET)
         ) {
-            ps.setDouble(1, ticket.getPrice());
-            ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
-            ps.setInt(3,ticket.getId());
-
-            return ps.executeUpdate() > 0;
+            bindUpdateExitTicket(ps, ticket);
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+            try (PreparedStatement activePs = con.prepareStatement(DBConstants.DELETE_ACTIVE_TICKET)) {
+                activePs.setInt(1, ticket.getId());
+                if (activePs.executeUpdate() == 0) {
+                    //the ticket is closed above already
+                    TransactionContext.setRollbackOnly();
+                    return false;
+                }
+            }
+            String vehicleRegNumber = ticket.getVehicleRegNumber();
+            TransactionContext.afterCommit(() -> activeTicketRegistry.remove(vehicleRegNumber));
+            return true;
         } catch (Exception ex) {
             logger.error("Error updating ticket", ex);
             return false;
         }
     }
 
+    @Override
     public int getNbTickets(String vehicleRegNumber) {
+        Integer cachedCount = vehicleVisitCache.get(vehicleRegNumber);
+        if (cachedCount != null) {
+            return cachedCount;
+        }
+        long readStartNanos = readStartNanos();
+        int count = countTickets(vehicleRegNumber);
+        cacheCount(vehicleRegNumber, count, readStartNanos);
+        return count;
+    }
+
+    // A read made in a transaction may come from a snapshot as old as the transaction itself
+    private static long readStartNanos() {
+        TransactionContext transaction = TransactionContext.current();
+        return transaction == null ? System.nanoTime() : transaction.getBeginNanos();
+    }
+
+    // Cached once the count is committed, unless a ticket of the vehicle was written since the read began; a count
+    // that included an uncommitted ticket of the transaction is never cached, the ticket's own write refuses it
+    private void cacheCount(String vehicleRegNumber, int count, long readStartNanos) {
+        TransactionContext.afterCommit(() -> vehicleVisitCache.putIfAbsent(vehicleRegNumber, count, readStartNanos));
+    }
+
+    // No round trip when the active sessions are loaded and the plate's count is cached; otherwise the missing half
+    // alone, or both from one query when neither is in memory
+    @Override
+    public ExitLookup getExitLookup(String vehicleRegNumber) {
+        if (activeTicketRegistry.isLoaded()) {
+            Ticket ticket = activeTicketRegistry.get(vehicleRegNumber);
+            return ticket == null ? new ExitLookup(null, 0) : new ExitLookup(ticket, getNbTickets(vehicleRegNumber));
+        }
+        Integer cachedCount = vehicleVisitCache.get(vehicleRegNumber);
+        if (cachedCount != null) {
+            Ticket ticket = getActiveTicket(vehicleRegNumber);
+            return new ExitLookup(ticket, ticket == null ? 0 : cachedCount);
+        }
+        long readStartNanos = readStartNanos();
+        try (
+                Connection con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_EXIT_LOOKUP)
+                //PARKING_NUMBER, TICKET_ID, IN_TIME, TYPE, ticket count
+        ) {
+            ps.setString(1, vehicleRegNumber);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return new ExitLookup(null, 0);
+                }
+                Ticket ticket = new Ticket();
+                ticket.setParkingSpot(new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(4)), false));
+                ticket.setId(rs.getInt(2));
+                ticket.setVehicleRegNumber(vehicleRegNumber);
+                ticket.setPrice(0);
+                ticket.setInTime(rs.getTimestamp(3));
+                int count = rs.getInt(5);
+                cacheCount(vehicleRegNumber, count, readStartNanos);
+                return new ExitLookup(ticket, count);
+            }
+        } catch (Exception ex) {
+            logger.error("Error looking up the exit of vehicle: {}", vehicleRegNumber, ex);
+            throw new RuntimeException("Error looking up the exit of a vehicle", ex);
+        }
+    }
+
+    private int countTickets(String vehicleRegNumber) {
         try (
                 Connection con = dataBaseConfig.getConnection();
                 PreparedStatement ps = con.prepareStatement(DBConstants.GET_NB_TICKETS)
@@ -102,15 +427,80 @@ public class TicketDAO {
         }
     }
 
+    @Override
+    public List<Ticket> getClosedTickets(int afterTicketId, int limit) {
+        List<Ticket> tickets = new ArrayList<>();
+        try (
+                Connection con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_CLOSED_TICKETS)
+                //ID, PARKING_NUMBER, TYPE, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
+        ) {
+            ps.setInt(1, afterTicketId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    tickets.add(readTicket(rs));
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error fetching closed tickets after id: {}", afterTicketId, ex);
+            throw new RuntimeException("Error fetching closed tickets", ex);
+        }
+        return tickets;
+    }
+
+    // Forward-only, read-only cursor (the defaults of prepareStatement): with Connector/J a fetch size of
+    // Integer.MIN_VALUE then streams the rows one by one instead of buffering the whole result. The connection cannot run another statement until the stream is read,
+    // so this is not meant to run inside a UnitOfWork.
+    @Override
+    public long forEachTicket(Consumer<Ticket> action) {
+        long count = 0;
+        try (
+                Connection con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_ALL_TICKETS)
+                //ID, PARKING_NUMBER, TYPE, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
+        ) {
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(readTicket(rs));
+                    count++;
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error streaming tickets after {} read", count, ex);
+            throw new RuntimeException("Error streaming tickets", ex);
+        }
+        return count;
+    }
+
+    private static Ticket readTicket(ResultSet rs) throws SQLException {
+        Ticket ticket = new Ticket();
+        ticket.setId(rs.getInt(1));
+        ticket.setParkingSpot(new ParkingSpot(rs.getInt(2), ParkingType.valueOf(rs.getString(3)), false));
+        ticket.setVehicleRegNumber(rs.getString(4));
+        ticket.setPrice(rs.getDouble(5));
+        ticket.setInTime(rs.getTimestamp(6));
+        ticket.setOutTime(rs.getTimestamp(7));
+        return ticket;
+    }
+
     public void updateExitTicketForTest(Ticket ticket) {
         try (
                 Connection con = dataBaseConfig.getConnection();
-                PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET_FOR_TEST)
+                PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET_FOR_TEST);
+                PreparedStatement activePs = con.prepareStatement(DBConstants.UPDATE_ACTIVE_TICKET_FOR_TEST)
         ) {
             ps.setTimestamp(1, new Timestamp(ticket.getInTime().getTime()));
             ps.setInt(2,ticket.getId());
 
             ps.executeUpdate();
+
+            activePs.setTimestamp(1, new Timestamp(ticket.getInTime().getTime()));
+            activePs.setInt(2, ticket.getId());
+            if (activePs.executeUpdate() > 0) {
+                activeTicketRegistry.put(ticket);
+            }
         } catch (Exception ex) {
             logger.error("Error updating ticket", ex);
         }
@@ -0,0 +1,14 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+// Told about committed ticket changes, see ObservedTicketRepository. Called on the thread that committed, so it
+// must be quick and must not throw.
+public interface TicketListener {
+
+    // A new ticket: an entry, or a whole stay when the ticket is already closed
+    void ticketSaved(Ticket ticket);
+
+    // An exit: the ticket now has its out-time and price
+    void ticketClosed(Ticket ticket);
+}
@@ -0,0 +1,62 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Tickets: the active session of each parked vehicle and the history of closed tickets
+public interface TicketRepository {
+
+    // Loads the active sessions the repository keeps in memory
+    void loadActiveTickets();
+
+    // An open ticket (no out-time) becomes the vehicle's active session; false if the vehicle already has one
+    boolean saveTicket(Ticket ticket);
+
+    // Closed tickets only; outcome i tells whether the i-th ticket was saved
+    boolean[] saveTickets(Collection<Ticket> tickets);
+
+    // Closes the ticket and ends the vehicle's active session
+    boolean updateExitTicket(Ticket ticket);
+
+    // Outcome i tells whether the i-th ticket was closed
+    boolean[] updateExitTickets(Collection<Ticket> tickets);
+
+    // New price of closed tickets, the active sessions are left alone; outcome i tells whether the i-th ticket was updated
+    boolean[] updateTicketPrices(Collection<Ticket> tickets);
+
+    // Revenue totals of a settlement run; outcome i tells whether the i-th total was saved
+    boolean[] saveSettlementRevenues(Collection<SettlementRevenue> revenues);
+
+    // Latest ticket of the vehicle, open or closed, null when it never parked
+    Ticket getTicket(String vehicleRegNumber);
+
+    // Open ticket of a parked vehicle, null when the vehicle is not parked
+    Ticket getActiveTicket(String vehicleRegNumber);
+
+    // Number of tickets of the vehicle, including the open one
+    int getNbTickets(String vehicleRegNumber);
+
+    // getActiveTicket and getNbTickets of an exiting vehicle together, in at most one round trip
+    ExitLookup getExitLookup(String vehicleRegNumber);
+
+    // Closed tickets with an id above afterTicketId, by id, at most limit of them: pages through the history
+    List<Ticket> getClosedTickets(int afterTicketId, int limit);
+
+    // Every ticket, open and closed, by id, handed to the action one at a time without loading the history in memory;
+    // returns the number of tickets read
+    long forEachTicket(Consumer<Ticket> action);
+
+    // Revenue in cents of the tickets of one parking type that left in [fromMillis, toMillis), before and after the
+    // settlement re-priced them
+    record SettlementRevenue(ParkingType parkingType, long fromMillis, long toMillis,
+                             long revenueBeforeCents, long revenueAfterCents) {
+    }
+
+    // activeTicket: null when the vehicle is not parked, visitCount is then 0
+    record ExitLookup(Ticket activeTicket, int visitCount) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.parkit.parkingsystem.dao;
+
+// Runs a group of repository calls as one transaction of the storage they belong to
+public interface UnitOfWork {
+
+    @FunctionalInterface
+    interface Work<T> {
+        T run() throws Exception;
+    }
+
+    // Commits what the work did if it completes, undoes it if it throws.
+    // Nested calls join the transaction already open on the current thread.
+    <T> T execute(Work<T> work) throws Exception;
+}
@@ -0,0 +1,132 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Number of tickets per vehicle for the most recently seen plates, least recently used plates evicted first.
+// A count read from the database is only cached when no ticket of the plate was written since the read began: the
+// time of the last write of the most recent plates is kept, older writes only as the time of the latest one forgotten.
+// Plates are spread by hash over independently locked stripes, so that gates working on different plates do not wait
+// for each other; each stripe evicts on its own, from its share of the maximum size.
+public class VehicleVisitCache {
+
+    public static final int DEFAULT_MAX_SIZE = Integer.getInteger("parkit.cache.visits.maxSize", 10_000);
+
+    private static final int MAX_STRIPES = 16;
+    // Fewest plates per stripe before the cache is split, so that a small cache keeps a plain LRU order
+    private static final int MIN_STRIPE_SIZE = 64;
+
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VehicleVisitCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    // A maxSize of 0 caches nothing: every count is read from the database
+    public VehicleVisitCache(int maxSize) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, maxSize / MIN_STRIPE_SIZE)));
+        int stripeSize = (maxSize + stripeCount - 1) / stripeCount;
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    private Stripe stripeOf(String vehicleRegNumber) {
+        int hash = vehicleRegNumber.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    // null when the plate is not cached
+    public Integer get(String vehicleRegNumber) {
+        Stripe stripe = stripeOf(vehicleRegNumber);
+        Integer visitCount;
+        synchronized (stripe) {
+            visitCount = stripe.visitCounts.get(vehicleRegNumber);
+        }
+        if (visitCount == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return visitCount;
+    }
+
+    // readStartNanos: System.nanoTime() when the read of the count began; a count that may miss a ticket written
+    // since then is not cached
+    public void putIfAbsent(String vehicleRegNumber, int visitCount, long readStartNanos) {
+        Stripe stripe = stripeOf(vehicleRegNumber);
+        synchronized (stripe) {
+            Long lastWrite = stripe.lastWrites.get(vehicleRegNumber);
+            if ((lastWrite != null && lastWrite - readStartNanos >= 0)
+                    || (stripe.lastForgottenWrite != Long.MIN_VALUE && stripe.lastForgottenWrite - readStartNanos >= 0)) {
+                return;
+            }
+            stripe.visitCounts.putIfAbsent(vehicleRegNumber, visitCount);
+        }
+    }
+
+    // Write-through of a committed ticket; an uncached plate stays uncached and will be counted from the database
+    public void increment(String vehicleRegNumber) {
+        Stripe stripe = stripeOf(vehicleRegNumber);
+        synchronized (stripe) {
+            stripe.lastWrites.put(vehicleRegNumber, System.nanoTime());
+            stripe.visitCounts.computeIfPresent(vehicleRegNumber, (plate, visitCount) -> visitCount + 1);
+        }
+    }
+
+    public void invalidate(String vehicleRegNumber) {
+        Stripe stripe = stripeOf(vehicleRegNumber);
+        synchronized (stripe) {
+            stripe.lastWrites.put(vehicleRegNumber, System.nanoTime());
+            stripe.visitCounts.remove(vehicleRegNumber);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.visitCounts.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Guarded by its own monitor
+    private static final class Stripe {
+        private final Map<String, Integer> visitCounts;
+        private final Map<String, Long> lastWrites;
+        private long lastForgottenWrite = Long.MIN_VALUE;
+
+        private Stripe(int maxSize) {
+            this.visitCounts = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > maxSize;
+                }
+            };
+            this.lastWrites = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    if (size() <= maxSize) {
+                        return false;
+                    }
+                    lastForgottenWrite = Math.max(lastForgottenWrite, eldest.getValue());
+                    return true;
+                }
+            };
+        }
+    }
+}
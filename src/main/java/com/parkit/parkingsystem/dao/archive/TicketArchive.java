@@ -0,0 +1,276 @@
+package com.parkit.parkingsystem.dao.archive;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Closed tickets exported to a read-only binary file for reporting and audits, read through a memory mapping
+// so that scans never touch the database.
+//   header (HEADER_SIZE bytes): magic, version, record count, plate count, dictionary offset, last ticket id
+//   records (RECORD_SIZE bytes each, sorted by in-time): in-time and out-time in epoch millis, ticket id,
+//     plate id, price in cents, parking number, parking type
+//   plate dictionary: every plate once, by plate id, as length and UTF-8 bytes
+public class TicketArchive {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchive");
+
+    private static final int MAGIC = 0x504B4152;
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 32;
+
+    private static final int IN_TIME = 0;
+    private static final int OUT_TIME = 8;
+    private static final int TICKET_ID = 16;
+    private static final int PLATE_ID = 20;
+    private static final int PRICE_CENTS = 24;
+    private static final int PARKING_NUMBER = 28;
+    private static final int PARKING_TYPE = 30;
+
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final ByteBuffer records;
+    private final int recordCount;
+    private final int lastTicketId;
+    private final String[] plates;
+    private final Map<String, Integer> plateIds;
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(int ticketId, int parkingNumber, ParkingType parkingType, String vehicleRegNumber,
+                   long priceCents, long inTime, long outTime);
+    }
+
+    private TicketArchive(ByteBuffer archive) throws IOException {
+        if (archive.limit() < HEADER_SIZE || archive.getInt(0) != MAGIC || archive.getInt(4) != VERSION) {
+            throw new IOException("Not a ticket archive");
+        }
+        recordCount = archive.getInt(8);
+        int plateCount = archive.getInt(12);
+        int dictionaryOffset = archive.getInt(16);
+        lastTicketId = archive.getInt(20);
+        records = archive.slice(HEADER_SIZE, recordCount * RECORD_SIZE);
+
+        plates = new String[plateCount];
+        plateIds = new HashMap<>(plateCount * 2);
+        ByteBuffer dictionary = archive.slice(dictionaryOffset, archive.limit() - dictionaryOffset);
+        for (int plateId = 0; plateId < plateCount; plateId++) {
+            byte[] plate = new byte[dictionary.getShort()];
+            dictionary.get(plate);
+            plates[plateId] = new String(plate, StandardCharsets.UTF_8);
+            plateIds.put(plates[plateId], plateId);
+        }
+    }
+
+    public static TicketArchive open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Ticket archive too large to be mapped: " + file);
+            }
+            return new TicketArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // --export-archive <file>. Refused on the journaled storage: once restored from a snapshot it only has the latest
+    // ticket of each vehicle, and the archive would silently miss the rest of the history.
+    public static int export(StorageEngine storageEngine, Path file) throws IOException {
+        if (storageEngine.type() == StorageEngine.Type.JOURNALED) {
+            throw new IllegalStateException("The archive needs the whole ticket history, which the journaled storage does not keep");
+        }
+        return export(storageEngine.ticketRepository(), file);
+    }
+
+    // Writes every closed ticket of the repository to the archive file and returns how many there are
+    public static int export(TicketRepository ticketRepository, Path file) throws IOException {
+        long start = System.nanoTime();
+        List<Ticket> closedTickets = new ArrayList<>();
+        int afterTicketId = 0;
+        List<Ticket> page;
+        do {
+            page = ticketRepository.getClosedTickets(afterTicketId, EXPORT_PAGE_SIZE);
+            closedTickets.addAll(page);
+            if (!page.isEmpty()) {
+                afterTicketId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == EXPORT_PAGE_SIZE);
+        write(file, closedTickets);
+        logger.info("Archived {} closed tickets to {} in {} ms", closedTickets.size(), file,
+                (System.nanoTime() - start) / 1_000_000);
+        return closedTickets.size();
+    }
+
+    // Open tickets are skipped. The file is written aside and moved in place, readers never see a partial archive.
+    public static void write(Path file, List<Ticket> tickets) throws IOException {
+        List<Ticket> closedTickets = new ArrayList<>(tickets.size());
+        for (Ticket ticket : tickets) {
+            if (ticket.getOutTime() != null) {
+                closedTickets.add(ticket);
+            }
+        }
+        closedTickets.sort((first, second) -> Long.compare(first.getInTime().getTime(), second.getInTime().getTime()));
+
+        Map<String, Integer> plateIds = new HashMap<>();
+        List<byte[]> plates = new ArrayList<>();
+        int dictionarySize = 0;
+        int lastTicketId = 0;
+        ByteBuffer records = ByteBuffer.allocate(closedTickets.size() * RECORD_SIZE);
+        for (Ticket ticket : closedTickets) {
+            Integer plateId = plateIds.get(ticket.getVehicleRegNumber());
+            if (plateId == null) {
+                plateId = plates.size();
+                plateIds.put(ticket.getVehicleRegNumber(), plateId);
+                byte[] plate = ticket.getVehicleRegNumber().getBytes(StandardCharsets.UTF_8);
+                plates.add(plate);
+                dictionarySize += Short.BYTES + plate.length;
+            }
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            records.putLong(ticket.getInTime().getTime())
+                    .putLong(ticket.getOutTime().getTime())
+                    .putInt(ticket.getId())
+                    .putInt(plateId)
+                    .putInt(Math.toIntExact(Math.round(ticket.getPrice() * 100)))
+                    .putShort((short) parkingSpot.getId())
+                    .put((byte) parkingSpot.getParkingType().ordinal())
+                    .put((byte) 0);
+            lastTicketId = Math.max(lastTicketId, ticket.getId());
+        }
+        records.flip();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(closedTickets.size()).putInt(plates.size())
+                .putInt(HEADER_SIZE + records.limit()).putInt(lastTicketId);
+        header.position(0);
+        ByteBuffer dictionary = ByteBuffer.allocate(dictionarySize);
+        for (byte[] plate : plates) {
+            dictionary.putShort((short) plate.length).put(plate);
+        }
+        dictionary.flip();
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] buffers = {header, records, dictionary};
+            while (dictionary.hasRemaining() || records.hasRemaining() || header.hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int size() {
+        return recordCount;
+    }
+
+    // Highest ticket id in the archive, 0 when it is empty
+    public int getLastTicketId() {
+        return lastTicketId;
+    }
+
+    // Tickets that came in within [from, to), in in-time order; returns how many were visited
+    public int scanByInTime(long from, long to, RecordVisitor visitor) {
+        int visited = 0;
+        for (int record = firstRecordAtOrAfter(from); record < recordCount; record++) {
+            int offset = record * RECORD_SIZE;
+            if (records.getLong(offset + IN_TIME) >= to) {
+                break;
+            }
+            visit(offset, visitor);
+            visited++;
+        }
+        return visited;
+    }
+
+    // Tickets of one vehicle, in in-time order; returns how many were visited
+    public int scanByPlate(String vehicleRegNumber, RecordVisitor visitor) {
+        Integer plateId = plateIds.get(vehicleRegNumber);
+        if (plateId == null) {
+            return 0;
+        }
+        int visited = 0;
+        int limit = recordCount * RECORD_SIZE;
+        for (int offset = PLATE_ID; offset < limit; offset += RECORD_SIZE) {
+            if (records.getInt(offset) == plateId) {
+                visit(offset - PLATE_ID, visitor);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    public List<Ticket> findByInTime(long from, long to) {
+        List<Ticket> tickets = new ArrayList<>();
+        scanByInTime(from, to, collectInto(tickets));
+        return tickets;
+    }
+
+    public List<Ticket> findByPlate(String vehicleRegNumber) {
+        List<Ticket> tickets = new ArrayList<>();
+        scanByPlate(vehicleRegNumber, collectInto(tickets));
+        return tickets;
+    }
+
+    // Revenue in cents of the tickets that came in within [from, to)
+    public long revenueCents(long from, long to) {
+        long[] revenue = new long[1];
+        scanByInTime(from, to, (ticketId, parkingNumber, parkingType, vehicleRegNumber, priceCents, inTime, outTime)
+                -> revenue[0] += priceCents);
+        return revenue[0];
+    }
+
+    private int firstRecordAtOrAfter(long inTime) {
+        int low = 0;
+        int high = recordCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (records.getLong(middle * RECORD_SIZE + IN_TIME) < inTime) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void visit(int offset, RecordVisitor visitor) {
+        visitor.visit(records.getInt(offset + TICKET_ID),
+                Short.toUnsignedInt(records.getShort(offset + PARKING_NUMBER)),
+                PARKING_TYPES[records.get(offset + PARKING_TYPE)],
+                plates[records.getInt(offset + PLATE_ID)],
+                records.getInt(offset + PRICE_CENTS),
+                records.getLong(offset + IN_TIME),
+                records.getLong(offset + OUT_TIME));
+    }
+
+    private static RecordVisitor collectInto(List<Ticket> tickets) {
+        return (ticketId, parkingNumber, parkingType, vehicleRegNumber, priceCents, inTime, outTime) -> {
+            Ticket ticket = new Ticket();
+            ticket.setId(ticketId);
+            ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(priceCents / 100.0);
+            ticket.setInTime(new Date(inTime));
+            ticket.setOutTime(new Date(outTime));
+            tickets.add(ticket);
+        };
+    }
+}
@@ -0,0 +1,160 @@
+package com.parkit.parkingsystem.dao.memory;
+
+import com.parkit.parkingsystem.config.TransactionContext;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Parking spots held only in memory: the lock-free spot index is the storage itself.
+public class InMemoryParkingSpotRepository implements ParkingSpotRepository {
+
+    private final ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+    // Type of each spot by PARKING_NUMBER, null for numbers that are not a spot
+    private final ParkingType[] parkingTypes;
+    // Set when the repository is made durable by a journal
+    ParkingJournal journal;
+
+    public InMemoryParkingSpotRepository(List<ParkingSpot> parkingSpots) {
+        int maxParkingNumber = 0;
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            maxParkingNumber = Math.max(maxParkingNumber, parkingSpot.getId());
+        }
+        parkingTypes = new ParkingType[maxParkingNumber + 1];
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            parkingTypes[parkingSpot.getId()] = parkingSpot.getParkingType();
+        }
+        parkingSpotIndex.load(parkingSpots);
+    }
+
+    // carSpots CAR spots numbered from 1, followed by bikeSpots BIKE spots, all available, on level 0 of lot 1
+    public static InMemoryParkingSpotRepository withLayout(int carSpots, int bikeSpots) {
+        return withLayout(1, 1, carSpots, bikeSpots);
+    }
+
+    // Lots numbered from 1 with levels numbered from 0, each level with carSpots CAR spots followed by bikeSpots BIKE
+    // spots, all available; spots are numbered from 1 across lots and levels
+    public static InMemoryParkingSpotRepository withLayout(int lots, int levels, int carSpots, int bikeSpots) {
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        int parkingNumber = 1;
+        for (int lotNumber = 1; lotNumber <= lots; lotNumber++) {
+            for (int levelNumber = 0; levelNumber < levels; levelNumber++) {
+                for (int spot = 0; spot < carSpots + bikeSpots; spot++) {
+                    parkingSpots.add(new ParkingSpot(parkingNumber++, spot < carSpots ? ParkingType.CAR : ParkingType.BIKE, true,
+                            lotNumber, levelNumber));
+                }
+            }
+        }
+        return new InMemoryParkingSpotRepository(parkingSpots);
+    }
+
+    @Override
+    public boolean loadParkingSpotIndex() {
+        return true;
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return parkingSpotIndex.nextAvailable(parkingType);
+    }
+
+    @Override
+    public ParkingSpot allocateParkingSpot(ParkingType parkingType) {
+        return allocateParkingSpot(ParkingSpot.ANY_LOT, parkingType);
+    }
+
+    @Override
+    public ParkingSpot allocateParkingSpot(int lotNumber, ParkingType parkingType) {
+        int parkingNumber = parkingSpotIndex.claim(lotNumber, parkingType);
+        if (parkingNumber <= 0) {
+            return null;
+        }
+        TransactionContext.afterRollback(() -> parkingSpotIndex.release(parkingNumber, parkingType));
+        if (journal != null) {
+            journal.recordSpotUpdated(parkingNumber, parkingType, false);
+        }
+        return parkingSpotIndex.locate(parkingNumber, false);
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        int parkingNumber = parkingSpot.getId();
+        ParkingType parkingType = parkingSpot.getParkingType();
+        if (parkingNumber <= 0 || parkingNumber >= parkingTypes.length || parkingTypes[parkingNumber] != parkingType) {
+            return false;
+        }
+        if (parkingSpot.isAvailable()) {
+            //a released spot can only be handed out again once the release is committed
+            TransactionContext.afterCommit(() -> parkingSpotIndex.release(parkingNumber, parkingType));
+        } else {
+            boolean wasAvailable = parkingSpotIndex.isAvailable(parkingNumber, parkingType);
+            parkingSpotIndex.update(parkingNumber, parkingType, false);
+            TransactionContext.afterRollback(() -> parkingSpotIndex.update(parkingNumber, parkingType, wasAvailable));
+        }
+        if (journal != null) {
+            journal.recordSpotUpdated(parkingNumber, parkingType, parkingSpot.isAvailable());
+        }
+        return true;
+    }
+
+    @Override
+    public int getAvailableCount(ParkingType parkingType) {
+        return parkingSpotIndex.availableCount(parkingType);
+    }
+
+    @Override
+    public int getAvailableCount(int lotNumber, ParkingType parkingType) {
+        return parkingSpotIndex.availableCount(lotNumber, parkingType);
+    }
+
+    @Override
+    public int getCapacity(ParkingType parkingType) {
+        return parkingSpotIndex.capacity(parkingType);
+    }
+
+    @Override
+    public boolean setLevelOpen(int lotNumber, int levelNumber, boolean open) {
+        boolean wasOpen = parkingSpotIndex.isLevelOpen(lotNumber, levelNumber);
+        if (!parkingSpotIndex.setLevelOpen(lotNumber, levelNumber, open)) {
+            return false;
+        }
+        TransactionContext.afterRollback(() -> parkingSpotIndex.setLevelOpen(lotNumber, levelNumber, wasOpen));
+        if (journal != null) {
+            journal.recordLevelOpen(lotNumber, levelNumber, open);
+        }
+        return true;
+    }
+
+    // Availability of every spot, for a journal snapshot
+    List<ParkingSpot> snapshotParkingSpots() {
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for (int parkingNumber = 1; parkingNumber < parkingTypes.length; parkingNumber++) {
+            ParkingType parkingType = parkingTypes[parkingNumber];
+            if (parkingType != null) {
+                parkingSpots.add(parkingSpotIndex.locate(parkingNumber, parkingSpotIndex.isAvailable(parkingNumber, parkingType)));
+            }
+        }
+        return parkingSpots;
+    }
+
+    // Closed levels, for a journal snapshot
+    Set<List<Integer>> snapshotClosedLevels() {
+        return parkingSpotIndex.closedLevels();
+    }
+
+    // Replay of a journal or snapshot; levels that are not part of the current layout are ignored
+    void restoreLevelOpen(int lotNumber, int levelNumber, boolean open) {
+        parkingSpotIndex.setLevelOpen(lotNumber, levelNumber, open);
+    }
+
+    // Replay of a journal or snapshot; spots that are not part of the current layout are ignored
+    void restoreAvailability(int parkingNumber, ParkingType parkingType, boolean isAvailable) {
+        if (parkingNumber > 0 && parkingNumber < parkingTypes.length && parkingTypes[parkingNumber] == parkingType) {
+            parkingSpotIndex.update(parkingNumber, parkingType, isAvailable);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.parkit.parkingsystem.dao.memory;
+
+import com.parkit.parkingsystem.config.TransactionContext;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Tickets held only in memory. The current state of every ticket is kept in a table indexed by ticket id,
+// active sessions and latest tickets by plate, and every committed change is appended to the ticket log.
+public class InMemoryTicketRepository implements TicketRepository {
+
+    static final long OPEN = -1;
+
+    private final AtomicInteger ticketSequence = new AtomicInteger();
+    private final TicketTable ticketTable = new TicketTable();
+    private final Map<String, TicketEntry> activeTickets = new ConcurrentHashMap<>();
+    private final Map<String, TicketEntry> latestTickets = new ConcurrentHashMap<>();
+    private final Map<String, Integer> visitCounts = new ConcurrentHashMap<>();
+    private final List<TicketEntry> ticketLog = new ArrayList<>();
+    // Not journaled: settlement is refused on the journaled storage
+    private final List<SettlementRevenue> settlementRevenues = new CopyOnWriteArrayList<>();
+    // Set when the repository is made durable by a journal
+    ParkingJournal journal;
+
+    @Override
+    public void loadActiveTickets() {
+        //nothing to load, the active sessions only live here
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        if (ticket.getParkingSpot() == null || ticket.getVehicleRegNumber() == null || ticket.getInTime() == null) {
+            return false;
+        }
+        int id = ticketSequence.incrementAndGet();
+        TicketEntry entry = TicketEntry.of(id, ticket);
+        String vehicleRegNumber = entry.vehicleRegNumber();
+        if (entry.isOpen() && activeTickets.putIfAbsent(vehicleRegNumber, entry) != null) {
+            return false;
+        }
+        ticket.setId(id);
+        ticketTable.set(id, entry);
+        visitCounts.merge(vehicleRegNumber, 1, Integer::sum);
+        TicketEntry previousLatest = latestTickets.get(vehicleRegNumber);
+        latestTickets.merge(vehicleRegNumber, entry, (latest, saved) -> saved.inTime() >= latest.inTime() ? saved : latest);
+
+        TransactionContext.afterRollback(() -> {
+            ticketTable.replace(id, entry, null);
+            activeTickets.remove(vehicleRegNumber, entry);
+            visitCounts.merge(vehicleRegNumber, -1, (count, minusOne) -> count == 1 ? null : count + minusOne);
+            if (previousLatest == null) {
+                latestTickets.remove(vehicleRegNumber, entry);
+            } else {
+                latestTickets.replace(vehicleRegNumber, entry, previousLatest);
+            }
+        });
+        TransactionContext.afterCommit(() -> appendToLog(entry));
+        if (journal != null) {
+            journal.recordTicketSaved(entry);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean[] saveTickets(Collection<Ticket> tickets) {
+        boolean[] outcomes = new boolean[tickets.size()];
+        int row = 0;
+        for (Ticket ticket : tickets) {
+            outcomes[row++] = ticket.getOutTime() != null && saveTicket(ticket);
+        }
+        return outcomes;
+    }
+
+    // False for a ticket closed already, by a concurrent exit of the same vehicle, so that its spot is not released twice
+    @Override
+    public boolean updateExitTicket(Ticket ticket) {
+        TicketEntry current = ticketTable.get(ticket.getId());
+        if (current == null || !current.isOpen() || ticket.getOutTime() == null) {
+            return false;
+        }
+        TicketEntry closed = current.close(ticket.getPrice(), ticket.getOutTime().getTime());
+        if (!ticketTable.replace(ticket.getId(), current, closed)) {
+            return false;
+        }
+        String vehicleRegNumber = current.vehicleRegNumber();
+        activeTickets.remove(vehicleRegNumber, current);
+        latestTickets.replace(vehicleRegNumber, current, closed);
+
+        TransactionContext.afterRollback(() -> {
+            ticketTable.replace(closed.id(), closed, current);
+            activeTickets.putIfAbsent(vehicleRegNumber, current);
+            latestTickets.replace(vehicleRegNumber, closed, current);
+        });
+        TransactionContext.afterCommit(() -> appendToLog(closed));
+        if (journal != null) {
+            journal.recordTicketClosed(closed);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean[] updateExitTickets(Collection<Ticket> tickets) {
+        boolean[] outcomes = new boolean[tickets.size()];
+        int row = 0;
+        for (Ticket ticket : tickets) {
+            outcomes[row++] = updateExitTicket(ticket);
+        }
+        return outcomes;
+    }
+
+    @Override
+    public boolean[] updateTicketPrices(Collection<Ticket> tickets) {
+        boolean[] outcomes = new boolean[tickets.size()];
+        int row = 0;
+        for (Ticket ticket : tickets) {
+            outcomes[row++] = updateTicketPrice(ticket);
+        }
+        return outcomes;
+    }
+
+    private boolean updateTicketPrice(Ticket ticket) {
+        TicketEntry current = ticketTable.get(ticket.getId());
+        if (current == null || current.isOpen()) {
+            return false;
+        }
+        TicketEntry repriced = current.close(ticket.getPrice(), current.outTime());
+        if (!ticketTable.replace(current.id(), current, repriced)) {
+            return false;
+        }
+        String vehicleRegNumber = current.vehicleRegNumber();
+        latestTickets.replace(vehicleRegNumber, current, repriced);
+
+        TransactionContext.afterRollback(() -> {
+            ticketTable.replace(repriced.id(), repriced, current);
+            latestTickets.replace(vehicleRegNumber, repriced, current);
+        });
+        TransactionContext.afterCommit(() -> appendToLog(repriced));
+        if (journal != null) {
+            journal.recordTicketClosed(repriced);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean[] saveSettlementRevenues(Collection<SettlementRevenue> revenues) {
+        List<SettlementRevenue> saved = List.copyOf(revenues);
+        TransactionContext.afterCommit(() -> settlementRevenues.addAll(saved));
+        boolean[] outcomes = new boolean[saved.size()];
+        Arrays.fill(outcomes, true);
+        return outcomes;
+    }
+
+    // Committed settlement revenue totals, oldest first
+    public List<SettlementRevenue> getSettlementRevenues() {
+        return List.copyOf(settlementRevenues);
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        TicketEntry entry = latestTickets.get(vehicleRegNumber);
+        return entry == null ? null : entry.toTicket();
+    }
+
+    @Override
+    public Ticket getActiveTicket(String vehicleRegNumber) {
+        TicketEntry entry = activeTickets.get(vehicleRegNumber);
+        return entry == null ? null : entry.toTicket();
+    }
+
+    @Override
+    public int getNbTickets(String vehicleRegNumber) {
+        return visitCounts.getOrDefault(vehicleRegNumber, 0);
+    }
+
+    @Override
+    public ExitLookup getExitLookup(String vehicleRegNumber) {
+        TicketEntry entry = activeTickets.get(vehicleRegNumber);
+        return entry == null ? new ExitLookup(null, 0) : new ExitLookup(entry.toTicket(), getNbTickets(vehicleRegNumber));
+    }
+
+    @Override
+    public List<Ticket> getClosedTickets(int afterTicketId, int limit) {
+        List<Ticket> tickets = new ArrayList<>();
+        int lastTicketId = ticketSequence.get();
+        for (int id = afterTicketId + 1; id <= lastTicketId && tickets.size() < limit; id++) {
+            TicketEntry entry = ticketTable.get(id);
+            if (entry != null && !entry.isOpen()) {
+                tickets.add(entry.toTicket());
+            }
+        }
+        return tickets;
+    }
+
+    @Override
+    public long forEachTicket(Consumer<Ticket> action) {
+        long count = 0;
+        int lastTicketId = ticketSequence.get();
+        for (int id = 1; id <= lastTicketId; id++) {
+            TicketEntry entry = ticketTable.get(id);
+            if (entry != null) {
+                action.accept(entry.toTicket());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Number of committed changes: one entry per ticket saved, closed or re-priced
+    public int getTicketLogSize() {
+        synchronized (ticketLog) {
+            return ticketLog.size();
+        }
+    }
+
+    private void appendToLog(TicketEntry entry) {
+        synchronized (ticketLog) {
+            ticketLog.add(entry);
+        }
+    }
+
+    // State written to a journal snapshot: active sessions and latest ticket of every vehicle
+    Collection<TicketEntry> snapshotTickets() {
+        Map<Integer, TicketEntry> tickets = new TreeMap<>();
+        latestTickets.values().forEach(entry -> tickets.put(entry.id(), entry));
+        activeTickets.values().forEach(entry -> tickets.put(entry.id(), entry));
+        return tickets.values();
+    }
+
+    Map<String, Integer> snapshotVisitCounts() {
+        return Map.copyOf(visitCounts);
+    }
+
+    int lastTicketId() {
+        return ticketSequence.get();
+    }
+
+    // Replay of a saved ticket, from a snapshot (visit counts restored on their own) or from the journal
+    void restoreTicket(TicketEntry entry, boolean countVisit) {
+        ticketSequence.accumulateAndGet(entry.id(), Math::max);
+        ticketTable.set(entry.id(), entry);
+        if (entry.isOpen()) {
+            activeTickets.put(entry.vehicleRegNumber(), entry);
+        }
+        if (countVisit) {
+            visitCounts.merge(entry.vehicleRegNumber(), 1, Integer::sum);
+        }
+        latestTickets.merge(entry.vehicleRegNumber(), entry, (latest, saved) -> saved.inTime() >= latest.inTime() ? saved : latest);
+        appendToLog(entry);
+    }
+
+    void restoreClosedTicket(TicketEntry closed) {
+        ticketTable.set(closed.id(), closed);
+        activeTickets.computeIfPresent(closed.vehicleRegNumber(), (plate, active) -> active.id() == closed.id() ? null : active);
+        latestTickets.computeIfPresent(closed.vehicleRegNumber(), (plate, latest) -> latest.id() == closed.id() ? closed : latest);
+        appendToLog(closed);
+    }
+
+    void restoreVisitCount(String vehicleRegNumber, int visitCount) {
+        visitCounts.put(vehicleRegNumber, visitCount);
+    }
+
+    void restoreTicketSequence(int lastTicketId) {
+        ticketSequence.accumulateAndGet(lastTicketId, Math::max);
+    }
+
+    record TicketEntry(int id, int parkingNumber, ParkingType parkingType, String vehicleRegNumber,
+                               double price, long inTime, long outTime) {
+
+        static TicketEntry of(int id, Ticket ticket) {
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            return new TicketEntry(id, parkingSpot.getId(), parkingSpot.getParkingType(), ticket.getVehicleRegNumber(),
+                    ticket.getPrice(), ticket.getInTime().getTime(),
+                    ticket.getOutTime() == null ? OPEN : ticket.getOutTime().getTime());
+        }
+
+        boolean isOpen() {
+            return outTime == OPEN;
+        }
+
+        private TicketEntry close(double closingPrice, long closingTime) {
+            return new TicketEntry(id, parkingNumber, parkingType, vehicleRegNumber, closingPrice, inTime, closingTime);
+        }
+
+        private Ticket toTicket() {
+            Ticket ticket = new Ticket();
+            ticket.setId(id);
+            ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(price);
+            ticket.setInTime(new Date(inTime));
+            ticket.setOutTime(isOpen() ? null : new Date(outTime));
+            return ticket;
+        }
+    }
+
+    // Tickets by id in fixed-size chunks allocated as ids grow; reads and updates are lock-free
+    private static final class TicketTable {
+        private static final int CHUNK_BITS = 12;
+        private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+        private volatile AtomicReferenceArray<AtomicReferenceArray<TicketEntry>> chunks = new AtomicReferenceArray<>(16);
+
+        private TicketEntry get(int id) {
+            AtomicReferenceArray<TicketEntry> chunk = chunk(id, false);
+            return chunk == null ? null : chunk.get(id & CHUNK_MASK);
+        }
+
+        private void set(int id, TicketEntry entry) {
+            chunk(id, true).set(id & CHUNK_MASK, entry);
+        }
+
+        private boolean replace(int id, TicketEntry expected, TicketEntry updated) {
+            AtomicReferenceArray<TicketEntry> chunk = chunk(id, false);
+            return chunk != null && chunk.compareAndSet(id & CHUNK_MASK, expected, updated);
+        }
+
+        private AtomicReferenceArray<TicketEntry> chunk(int id, boolean create) {
+            if (id <= 0) {
+                return null;
+            }
+            int chunkIndex = id >>> CHUNK_BITS;
+            AtomicReferenceArray<AtomicReferenceArray<TicketEntry>> currentChunks = chunks;
+            AtomicReferenceArray<TicketEntry> chunk = chunkIndex < currentChunks.length() ? currentChunks.get(chunkIndex) : null;
+            if (chunk != null || !create) {
+                return chunk;
+            }
+            synchronized (this) {
+                currentChunks = chunks;
+                if (chunkIndex >= currentChunks.length()) {
+                    AtomicReferenceArray<AtomicReferenceArray<TicketEntry>> grown =
+                            new AtomicReferenceArray<>(Math.max(currentChunks.length() * 2, chunkIndex + 1));
+                    for (int i = 0; i < currentChunks.length(); i++) {
+                        grown.set(i, currentChunks.get(i));
+                    }
+                    chunks = grown;
+                    currentChunks = grown;
+                }
+                chunk = currentChunks.get(chunkIndex);
+                if (chunk == null) {
+                    chunk = new AtomicReferenceArray<>(1 << CHUNK_BITS);
+                    currentChunks.set(chunkIndex, chunk);
+                }
+                return chunk;
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.parkit.parkingsystem.dao.memory;
+
+import com.parkit.parkingsystem.config.TransactionContext;
+import com.parkit.parkingsystem.dao.UnitOfWork;
+
+import java.util.concurrent.locks.Lock;
+
+// Unit of work of the in-memory repositories: their changes apply right away and are undone by the
+// rollback actions they register, history entries are only appended once the work commits.
+// With a journal, the work only commits once its journal records are durable.
+public class InMemoryUnitOfWork implements UnitOfWork {
+
+    private final ParkingJournal journal;
+
+    public InMemoryUnitOfWork() {
+        this(null);
+    }
+
+    public InMemoryUnitOfWork(ParkingJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public <T> T execute(Work<T> work) throws Exception {
+        if (TransactionContext.isActive()) {
+            return work.run();
+        }
+        Lock snapshotLock = journal == null ? null : journal.unitOfWorkLock();
+        if (snapshotLock != null) {
+            snapshotLock.lock();
+        }
+        try (TransactionContext transaction = TransactionContext.begin()) {
+            try {
+                T result = work.run();
+                if (journal != null) {
+                    journal.commitPending();
+                }
+                transaction.commit();
+                return result;
+            } catch (Exception e) {
+                if (journal != null) {
+                    journal.discardPending();
+                }
+                transaction.rollback();
+                throw e;
+            }
+        } finally {
+            if (snapshotLock != null) {
+                snapshotLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package com.parkit.parkingsystem.dao.memory;
+
+import com.parkit.parkingsystem.config.TransactionContext;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.memory.InMemoryTicketRepository.TicketEntry;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+// Makes the in-memory repositories durable. Every change they make, level closures included, is recorded in an append-only journal file;
+// the records of a unit of work are written when it commits and the work only completes once they are on disk.
+// A single writer thread takes all the units of work waiting at that time and syncs them with one force
+// (group commit). Snapshots of spot availability and tickets are written periodically and the journal is
+// truncated after each one, so that startup only replays the snapshot and the few records written since.
+//
+// Journal frame, one per unit of work: length (int, of what follows up to the checksum), sequence (long), then for
+// each change type (byte), payload length (int) and payload, and the CRC32C of everything after the length (int).
+// A torn frame at the end of the file is dropped on replay, so a unit of work is replayed entirely or not at all.
+public class ParkingJournal implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("ParkingJournal");
+
+    static final String JOURNAL_FILE = "journal.log";
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private static final byte TICKET_SAVED = 1;
+    private static final byte TICKET_CLOSED = 2;
+    private static final byte SPOT_UPDATED = 3;
+    private static final byte LEVEL_CLOSED = 4;
+    private static final byte LEVEL_OPENED = 5;
+
+    private static final int SNAPSHOT_MAGIC = 0x504B534E;
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int RECORD_HEADER_SIZE = Byte.BYTES + Integer.BYTES;
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final Path directory;
+    private final InMemoryParkingSpotRepository parkingSpotRepository;
+    private final InMemoryTicketRepository ticketRepository;
+    private final boolean fsync;
+
+    private final FileChannel journalChannel;
+    private final LinkedBlockingQueue<PendingWrite> writeQueue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private final ScheduledExecutorService snapshotScheduler;
+    // Units of work hold the read lock while they run and commit, a snapshot takes the write lock
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    // Records of the unit of work running on the current thread
+    private final ThreadLocal<List<Record>> pendingRecords = ThreadLocal.withInitial(ArrayList::new);
+
+    // Only touched by the writer thread, or by a snapshot while the writer is idle
+    private long lastSequence;
+    private volatile IOException writeFailure;
+    private volatile boolean closed;
+
+    private ParkingJournal(Path directory, InMemoryParkingSpotRepository parkingSpotRepository,
+                           InMemoryTicketRepository ticketRepository, boolean fsync, long snapshotIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.parkingSpotRepository = parkingSpotRepository;
+        this.ticketRepository = ticketRepository;
+        this.fsync = fsync;
+
+        Files.createDirectories(directory);
+        long start = System.nanoTime();
+        long snapshotSequence = readSnapshot();
+        journalChannel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int replayed = replayJournal(snapshotSequence);
+        logger.info("Recovered parking state from {} in {} ms ({} journal records replayed)",
+                directory, (System.nanoTime() - start) / 1_000_000, replayed);
+
+        writerThread = new Thread(this::writeLoop, "parking-journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        if (snapshotIntervalMillis > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "parking-journal-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(this::scheduledSnapshot,
+                    snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            snapshotScheduler = null;
+        }
+        parkingSpotRepository.journal = this;
+        ticketRepository.journal = this;
+    }
+
+    // Restores the repositories from the snapshot and journal found in the directory, then records their changes there.
+    // snapshotIntervalMillis <= 0 only snapshots on close.
+    public static ParkingJournal open(Path directory, InMemoryParkingSpotRepository parkingSpotRepository,
+                                      InMemoryTicketRepository ticketRepository, boolean fsync,
+                                      long snapshotIntervalMillis) throws IOException {
+        return new ParkingJournal(directory, parkingSpotRepository, ticketRepository, fsync, snapshotIntervalMillis);
+    }
+
+    Lock unitOfWorkLock() {
+        return snapshotLock.readLock();
+    }
+
+    void recordTicketSaved(TicketEntry entry) {
+        record(TICKET_SAVED, encodeTicket(entry));
+    }
+
+    void recordTicketClosed(TicketEntry entry) {
+        record(TICKET_CLOSED, encodeTicket(entry));
+    }
+
+    void recordSpotUpdated(int parkingNumber, ParkingType parkingType, boolean isAvailable) {
+        ByteBuffer payload = ByteBuffer.allocate(Integer.BYTES + 2);
+        payload.putInt(parkingNumber).put((byte) parkingType.ordinal()).put((byte) (isAvailable ? 1 : 0));
+        record(SPOT_UPDATED, payload.array());
+    }
+
+    void recordLevelOpen(int lotNumber, int levelNumber, boolean open) {
+        ByteBuffer payload = ByteBuffer.allocate(2 * Integer.BYTES);
+        payload.putInt(lotNumber).putInt(levelNumber);
+        record(open ? LEVEL_OPENED : LEVEL_CLOSED, payload.array());
+    }
+
+    // Inside a unit of work the record waits for its commit; outside it is written right away, under the lock a unit
+    // of work holds, so that it cannot land between a snapshot and the truncation of the journal
+    private void record(byte type, byte[] payload) {
+        Record record = new Record(type, payload);
+        if (TransactionContext.isActive()) {
+            pendingRecords.get().add(record);
+            return;
+        }
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            write(List.of(record));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes the records of the current unit of work and waits until they are durable
+    void commitPending() {
+        List<Record> records = pendingRecords.get();
+        if (records.isEmpty()) {
+            return;
+        }
+        pendingRecords.remove();
+        write(records);
+    }
+
+    void discardPending() {
+        pendingRecords.remove();
+    }
+
+    private void write(List<Record> records) {
+        IOException failure = writeFailure;
+        if (failure != null || closed) {
+            throw new UncheckedIOException("Parking journal is not writable",
+                    failure != null ? failure : new IOException("Parking journal is closed"));
+        }
+        PendingWrite pendingWrite = new PendingWrite(records, new CompletableFuture<>());
+        writeQueue.add(pendingWrite);
+        try {
+            pendingWrite.done().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof UncheckedIOException uncheckedIOException
+                    ? uncheckedIOException : new UncheckedIOException(new IOException(e.getCause()));
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        while (true) {
+            try {
+                batch.add(writeQueue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            writeQueue.drainTo(batch);
+            boolean stop = batch.removeIf(pendingWrite -> pendingWrite.records() == null);
+            try {
+                if (writeFailure != null) {
+                    throw writeFailure;
+                }
+                buffer = writeBatch(batch, buffer);
+                batch.forEach(pendingWrite -> pendingWrite.done().complete(null));
+            } catch (IOException e) {
+                if (writeFailure == null) {
+                    logger.error("Error writing parking journal, further changes are rejected", e);
+                    writeFailure = e;
+                }
+                UncheckedIOException failure = new UncheckedIOException(e);
+                batch.forEach(pendingWrite -> pendingWrite.done().completeExceptionally(failure));
+            }
+            batch.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    private ByteBuffer writeBatch(List<PendingWrite> batch, ByteBuffer buffer) throws IOException {
+        if (batch.isEmpty()) {
+            return buffer;
+        }
+        int size = 0;
+        for (PendingWrite pendingWrite : batch) {
+            size += FRAME_HEADER_SIZE + Integer.BYTES;
+            for (Record record : pendingWrite.records()) {
+                size += RECORD_HEADER_SIZE + record.payload().length;
+            }
+        }
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+        }
+        buffer.clear();
+        CRC32C crc = new CRC32C();
+        for (PendingWrite pendingWrite : batch) {
+            int start = buffer.position();
+            buffer.position(start + Integer.BYTES).putLong(++lastSequence);
+            for (Record record : pendingWrite.records()) {
+                buffer.put(record.type()).putInt(record.payload().length).put(record.payload());
+            }
+            buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+            crc.reset();
+            crc.update(buffer.duplicate().position(start + Integer.BYTES).limit(buffer.position()));
+            buffer.putInt((int) crc.getValue());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            journalChannel.write(buffer);
+        }
+        if (fsync) {
+            journalChannel.force(false);
+        }
+        return buffer;
+    }
+
+    // Writes a snapshot of the current state and empties the journal. Units of work wait while it runs.
+    public void snapshot() throws IOException {
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            if (writeFailure != null) {
+                throw writeFailure;
+            }
+            // No unit of work is running: every record is already written and the writer is idle
+            writeSnapshot();
+            journalChannel.truncate(0);
+            journalChannel.position(0);
+            journalChannel.force(true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            logger.error("Error writing parking snapshot", e);
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        List<ParkingSpot> parkingSpots = parkingSpotRepository.snapshotParkingSpots();
+        Collection<TicketEntry> tickets = ticketRepository.snapshotTickets();
+        Map<String, Integer> visitCounts = ticketRepository.snapshotVisitCounts();
+        Set<List<Integer>> closedLevels = parkingSpotRepository.snapshotClosedLevels();
+
+        List<byte[]> encodedTickets = new ArrayList<>(tickets.size());
+        int size = Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES + parkingSpots.size() * (Integer.BYTES + 2)
+                + Integer.BYTES + Integer.BYTES + Integer.BYTES + Integer.BYTES + closedLevels.size() * 2 * Integer.BYTES;
+        for (TicketEntry ticket : tickets) {
+            byte[] encodedTicket = encodeTicket(ticket);
+            encodedTickets.add(encodedTicket);
+            size += encodedTicket.length;
+        }
+        List<byte[]> plates = new ArrayList<>(visitCounts.size());
+        List<Integer> counts = new ArrayList<>(visitCounts.size());
+        for (Map.Entry<String, Integer> visitCount : visitCounts.entrySet()) {
+            byte[] plate = visitCount.getKey().getBytes(StandardCharsets.UTF_8);
+            plates.add(plate);
+            counts.add(visitCount.getValue());
+            size += Short.BYTES + plate.length + Integer.BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(SNAPSHOT_MAGIC).putLong(lastSequence).putInt(ticketRepository.lastTicketId());
+        buffer.putInt(parkingSpots.size());
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            buffer.putInt(parkingSpot.getId()).put((byte) parkingSpot.getParkingType().ordinal())
+                    .put((byte) (parkingSpot.isAvailable() ? 1 : 0));
+        }
+        buffer.putInt(encodedTickets.size());
+        encodedTickets.forEach(buffer::put);
+        buffer.putInt(plates.size());
+        for (int i = 0; i < plates.size(); i++) {
+            buffer.putShort((short) plates.get(i).length).put(plates.get(i)).putInt(counts.get(i));
+        }
+        buffer.putInt(closedLevels.size());
+        for (List<Integer> closedLevel : closedLevels) {
+            buffer.putInt(closedLevel.get(0)).putInt(closedLevel.get(1));
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        // Written aside then moved over the previous snapshot, so that a crash never leaves a partial one
+        Path snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        Path temporaryPath = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.debug("Wrote parking snapshot at journal sequence {} ({} tickets)", lastSequence, encodedTickets.size());
+    }
+
+    // Returns the journal sequence the snapshot covers, 0 without snapshot
+    private long readSnapshot() throws IOException {
+        Path snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshotPath)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+        if (buffer.limit() < 2 * Integer.BYTES || buffer.getInt(0) != SNAPSHOT_MAGIC) {
+            throw new IOException("Corrupted parking snapshot " + snapshotPath);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.limit() - Integer.BYTES);
+        if (buffer.getInt(buffer.limit() - Integer.BYTES) != (int) crc.getValue()) {
+            throw new IOException("Corrupted parking snapshot " + snapshotPath);
+        }
+        buffer.position(Integer.BYTES);
+        long snapshotSequence = buffer.getLong();
+        int lastTicketId = buffer.getInt();
+        int spotCount = buffer.getInt();
+        for (int i = 0; i < spotCount; i++) {
+            parkingSpotRepository.restoreAvailability(buffer.getInt(), PARKING_TYPES[buffer.get()], buffer.get() == 1);
+        }
+        int ticketCount = buffer.getInt();
+        for (int i = 0; i < ticketCount; i++) {
+            ticketRepository.restoreTicket(decodeTicket(buffer), false);
+        }
+        int visitCountCount = buffer.getInt();
+        for (int i = 0; i < visitCountCount; i++) {
+            ticketRepository.restoreVisitCount(readString(buffer), buffer.getInt());
+        }
+        //absent from the snapshots written before levels could be closed
+        if (buffer.remaining() > Integer.BYTES) {
+            int closedLevelCount = buffer.getInt();
+            for (int i = 0; i < closedLevelCount; i++) {
+                parkingSpotRepository.restoreLevelOpen(buffer.getInt(), buffer.getInt(), false);
+            }
+        }
+        ticketRepository.restoreTicketSequence(lastTicketId);
+        lastSequence = snapshotSequence;
+        return snapshotSequence;
+    }
+
+    // Applies the frames written after the snapshot and cuts a torn frame off the end of the file
+    private int replayJournal(long snapshotSequence) throws IOException {
+        long size = journalChannel.size();
+        int replayed = 0;
+        long validEnd = 0;
+        if (size > 0) {
+            MappedByteBuffer buffer = journalChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32C crc = new CRC32C();
+            while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                if (length < Long.BYTES || buffer.remaining() < length + Integer.BYTES) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.duplicate().limit(start + Integer.BYTES + length));
+                long sequence = buffer.getLong();
+                ByteBuffer records = buffer.slice(buffer.position(), length - Long.BYTES);
+                buffer.position(start + Integer.BYTES + length);
+                if (buffer.getInt() != (int) crc.getValue()) {
+                    break;
+                }
+                validEnd = buffer.position();
+                if (sequence > snapshotSequence) {
+                    while (records.hasRemaining()) {
+                        byte type = records.get();
+                        int payloadLength = records.getInt();
+                        apply(type, records.slice(records.position(), payloadLength));
+                        records.position(records.position() + payloadLength);
+                        replayed++;
+                    }
+                }
+                lastSequence = Math.max(lastSequence, sequence);
+            }
+        }
+        if (validEnd < size) {
+            logger.warn("Dropping {} bytes of an incomplete frame at the end of the parking journal", size - validEnd);
+            journalChannel.truncate(validEnd);
+        }
+        journalChannel.position(validEnd);
+        return replayed;
+    }
+
+    private void apply(byte type, ByteBuffer payload) throws IOException {
+        switch (type) {
+            case TICKET_SAVED -> ticketRepository.restoreTicket(decodeTicket(payload), true);
+            case TICKET_CLOSED -> ticketRepository.restoreClosedTicket(decodeTicket(payload));
+            case SPOT_UPDATED -> parkingSpotRepository.restoreAvailability(payload.getInt(),
+                    PARKING_TYPES[payload.get()], payload.get() == 1);
+            case LEVEL_CLOSED -> parkingSpotRepository.restoreLevelOpen(payload.getInt(), payload.getInt(), false);
+            case LEVEL_OPENED -> parkingSpotRepository.restoreLevelOpen(payload.getInt(), payload.getInt(), true);
+            default -> throw new IOException("Unknown parking journal record type " + type);
+        }
+    }
+
+    private static byte[] encodeTicket(TicketEntry entry) {
+        byte[] plate = entry.vehicleRegNumber().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + 1 + 3 * Long.BYTES + Short.BYTES + plate.length);
+        buffer.putInt(entry.id()).putInt(entry.parkingNumber()).put((byte) entry.parkingType().ordinal())
+                .putDouble(entry.price()).putLong(entry.inTime()).putLong(entry.outTime())
+                .putShort((short) plate.length).put(plate);
+        return buffer.array();
+    }
+
+    private static TicketEntry decodeTicket(ByteBuffer buffer) {
+        int id = buffer.getInt();
+        int parkingNumber = buffer.getInt();
+        ParkingType parkingType = PARKING_TYPES[buffer.get()];
+        double price = buffer.getDouble();
+        long inTime = buffer.getLong();
+        long outTime = buffer.getLong();
+        return new TicketEntry(id, parkingNumber, parkingType, readString(buffer), price, inTime, outTime);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Takes a last snapshot so that the next startup has nothing to replay
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        try {
+            if (writeFailure == null) {
+                snapshot();
+            }
+        } finally {
+            closed = true;
+            writeQueue.add(new PendingWrite(null, null));
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            journalChannel.close();
+            parkingSpotRepository.journal = null;
+            ticketRepository.journal = null;
+        }
+    }
+
+    private record Record(byte type, byte[] payload) {
+    }
+
+    // records is null for the request that stops the writer
+    private record PendingWrite(List<Record> records, CompletableFuture<Void> done) {
+    }
+}
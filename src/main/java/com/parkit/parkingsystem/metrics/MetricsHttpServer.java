@@ -0,0 +1,79 @@
+package com.parkit.parkingsystem.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Plain-text scrape endpoint: GET /metrics answers MetricsRegistry.renderText() from one background thread.
+// Started with -Dparkit.metrics.port, on loopback unless -Dparkit.metrics.host says otherwise.
+public class MetricsHttpServer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("MetricsHttpServer");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private MetricsHttpServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    // null when no port is configured
+    public static MetricsHttpServer fromSystemProperties(MetricsRegistry registry) throws IOException {
+        Integer port = Integer.getInteger("parkit.metrics.port");
+        if (port == null) {
+            return null;
+        }
+        String host = System.getProperty("parkit.metrics.host");
+        InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+        return start(new InetSocketAddress(address, port), registry);
+    }
+
+    public static MetricsHttpServer start(InetSocketAddress address, MetricsRegistry registry) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> respond(exchange, registry));
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Serving metrics on http://{}:{}/metrics", address.getHostString(), server.getAddress().getPort());
+        return new MetricsHttpServer(server, executor);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, MetricsRegistry registry) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.renderText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,97 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+// Named counters, latency histograms and gauges. Instrumented classes look their metrics up once and keep them in
+// static fields, so that the hot path only pays for a LongAdder or histogram update. The default registry is the one
+// exported through JMX (MetricsMBean) and the scrape endpoint (MetricsHttpServer).
+// Names are dotted, e.g. parking.entry.latency; the text format turns the dots into underscores.
+public class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    // Read on every export; registering a name again replaces the previous gauge
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    // Every metric as one number, by name: histograms give <name>.count, .meanMicros, .p50Micros, .p90Micros,
+    // .p99Micros, .p99.9Micros and .maxMicros
+    public Map<String, Double> snapshot() {
+        Map<String, Double> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, (double) counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsDouble()));
+        histograms.forEach((name, histogram) -> {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            values.put(name + ".count", (double) snapshot.count());
+            values.put(name + ".meanMicros", snapshot.meanNanos() / 1000);
+            for (double percentile : PERCENTILES) {
+                values.put(name + ".p" + formatPercentile(percentile) + "Micros", snapshot.valueAtPercentile(percentile) / 1000.0);
+            }
+            values.put(name + ".maxMicros", snapshot.maxNanos() / 1000.0);
+        });
+        return values;
+    }
+
+    // Prometheus text exposition format: counters and gauges as they are, histograms as summaries in seconds
+    public String renderText() {
+        StringBuilder text = new StringBuilder();
+        new TreeMap<>(counters).forEach((name, counter) -> {
+            String metric = sanitize(name) + "_total";
+            text.append("# TYPE ").append(metric).append(" counter\n");
+            text.append(metric).append(' ').append(counter.sum()).append('\n');
+        });
+        new TreeMap<>(gauges).forEach((name, gauge) -> {
+            String metric = sanitize(name);
+            text.append("# TYPE ").append(metric).append(" gauge\n");
+            text.append(metric).append(' ').append(format(gauge.getAsDouble())).append('\n');
+        });
+        new TreeMap<>(histograms).forEach((name, histogram) -> {
+            String metric = sanitize(name) + "_seconds";
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            text.append("# TYPE ").append(metric).append(" summary\n");
+            for (double percentile : PERCENTILES) {
+                text.append(metric).append("{quantile=\"").append(format(percentile / 100)).append("\"} ")
+                        .append(format(snapshot.valueAtPercentile(percentile) / 1e9)).append('\n');
+            }
+            text.append(metric).append("_sum ").append(format(snapshot.sumNanos() / 1e9)).append('\n');
+            text.append(metric).append("_count ").append(snapshot.count()).append('\n');
+        });
+        return text.toString();
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value) : Double.toString(value);
+    }
+}
@@ -3,14 +3,27 @@ package com.parkit.parkingsystem.model;
 import com.parkit.parkingsystem.constants.ParkingType;
 
 public class ParkingSpot {
+
+    // Lot number of a spot whose site is not known, or of a request for a spot in any lot
+    public static final int ANY_LOT = 0;
+
     private int number;
     private ParkingType parkingType;
     private boolean isAvailable;
+    // Site and level of the spot; PARKING_NUMBER stays unique across all of them
+    private int lotNumber;
+    private int levelNumber;
 
     public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
+        this(number, parkingType, isAvailable, ANY_LOT, 0);
+    }
+
+    public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable, int lotNumber, int levelNumber) {
         this.number = number;
         this.parkingType = parkingType;
         this.isAvailable = isAvailable;
+        this.lotNumber = lotNumber;
+        this.levelNumber = levelNumber;
     }
 
     public int getId() {
@@ -37,6 +50,22 @@ public class ParkingSpot {
         isAvailable = available;
     }
 
+    public int getLotNumber() {
+        return lotNumber;
+    }
+
+    public void setLotNumber(int lotNumber) {
+        this.lotNumber = lotNumber;
+    }
+
+    public int getLevelNumber() {
+        return levelNumber;
+    }
+
+    public void setLevelNumber(int levelNumber) {
+        this.levelNumber = levelNumber;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
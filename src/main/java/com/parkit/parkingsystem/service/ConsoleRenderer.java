@@ -0,0 +1,53 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.io.PrintStream;
+
+// The messages of the interactive shell; each event is written with a single print, one lock acquisition
+public class ConsoleRenderer implements ParkingRenderer {
+
+    private final PrintStream out;
+
+    public ConsoleRenderer(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void entered(EntryResult entryResult) {
+        Ticket ticket = entryResult.ticket();
+        StringBuilder message = new StringBuilder(256);
+        if (entryResult.isDiscounted()) {
+            message.append("\nHappy to see you again! As a regular user of our parking lot, you will enjoy a ")
+                    .append(entryResult.discountPercent()).append("% discount.\n\n");
+        }
+        message.append("Generated Ticket and saved in DB\n\n")
+                .append("Please park your vehicle in spot number: ").append(entryResult.parkingSpot().getId()).append('\n')
+                .append("\nRecorded in-time for vehicle number: ").append(ticket.getVehicleRegNumber())
+                .append(" is: ").append(ticket.getInTime()).append("\n\n");
+        out.print(message);
+    }
+
+    @Override
+    public void exited(ExitResult exitResult) {
+        Ticket ticket = exitResult.ticket();
+        StringBuilder message = new StringBuilder(256);
+        if (exitResult.price() == 0.0) {
+            message.append("\nThank you for using our parking. No payment needed.\n");
+        } else if (exitResult.isDiscounted()) {
+            message.append("\nPlease pay the parking fare (").append(exitResult.discountPercent())
+                    .append("% discount included): ").append(exitResult.price()).append("€\n");
+        } else {
+            message.append("\nPlease pay the parking fare: ").append(exitResult.price()).append("€\n");
+        }
+        message.append('\n')
+                .append("Recorded out-time for vehicle number ").append(ticket.getVehicleRegNumber())
+                .append(" is: ").append(ticket.getOutTime()).append("\n\n");
+        out.print(message);
+    }
+
+    @Override
+    public void exitFailed(String vehicleRegNumber) {
+        out.println("Unable to update ticket information. Error occurred");
+    }
+}
@@ -0,0 +1,16 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+// A vehicle parked: its open ticket, and the loyalty discount it will get for this visit
+public record EntryResult(Ticket ticket, int discountPercent) {
+
+    public ParkingSpot parkingSpot() {
+        return ticket.getParkingSpot();
+    }
+
+    public boolean isDiscounted() {
+        return discountPercent > 0;
+    }
+}
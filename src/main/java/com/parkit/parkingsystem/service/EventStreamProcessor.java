@@ -0,0 +1,148 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Headless mode: entry/exit events read one per line and processed through ParkingService without menus.
+//   IN <CAR|BIKE> <vehicle registration number>
+//   OUT <vehicle registration number>
+// Blank lines and lines starting with # are skipped.
+public class EventStreamProcessor {
+
+    private static final Logger logger = LogManager.getLogger("EventStreamProcessor");
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final ParkingService parkingService;
+
+    public EventStreamProcessor(ParkingService parkingService) {
+        this.parkingService = parkingService;
+    }
+
+    // --events <file>, --events - for stdin, or --socket <port> for one gate controller connection on loopback
+    public static void loadEventStream(String[] args, StorageEngine storageEngine) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: --events <file|-> or --socket <port>");
+        }
+        storageEngine.load();
+        ParkingService parkingService = new ParkingService(null, storageEngine, new FareCalculatorService());
+        parkingService.setRenderer(ParkingRenderer.fromSystemProperties(ParkingRenderer.SILENT));
+        EventStreamProcessor eventStreamProcessor = new EventStreamProcessor(parkingService);
+
+        Report report;
+        switch (args[0]) {
+            case "--events" -> {
+                if ("-".equals(args[1])) {
+                    report = eventStreamProcessor.process(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                } else {
+                    try (Reader events = Files.newBufferedReader(Path.of(args[1]), StandardCharsets.UTF_8)) {
+                        report = eventStreamProcessor.process(events);
+                    }
+                }
+            }
+            case "--socket" -> {
+                int port = Integer.parseInt(args[1]);
+                try (ServerSocket serverSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+                    logger.info("Waiting for gate events on port {}", port);
+                    try (Socket socket = serverSocket.accept()) {
+                        report = eventStreamProcessor.process(
+                                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown event source " + args[0]);
+        }
+        logger.info(report);
+        System.out.println(report);
+    }
+
+    public Report process(Reader events) throws IOException {
+        BufferedReader reader = events instanceof BufferedReader bufferedReader
+                ? bufferedReader : new BufferedReader(events, READ_BUFFER_SIZE);
+        long entries = 0;
+        long exits = 0;
+        long failures = 0;
+        //fixed size whatever the number of events, a --socket stream may never end
+        LatencyHistogram latencies = new LatencyHistogram();
+        long start = System.nanoTime();
+
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            long eventStart = System.nanoTime();
+            try {
+                String[] fields = line.split("\\s+");
+                switch (fields[0].toUpperCase(Locale.ROOT)) {
+                    case "IN" -> {
+                        checkFieldCount(fields, 3);
+                        parkingService.processIncomingVehicle(ParkingType.valueOf(fields[1].toUpperCase(Locale.ROOT)), fields[2]);
+                        entries++;
+                    }
+                    case "OUT" -> {
+                        checkFieldCount(fields, 2);
+                        parkingService.processExitingVehicle(fields[1]);
+                        exits++;
+                    }
+                    default -> throw new IllegalArgumentException("Unknown event type " + fields[0]);
+                }
+            } catch (Exception e) {
+                failures++;
+                logger.warn("Event at line {} rejected: {}", lineNumber, e.getMessage());
+            }
+            latencies.record(System.nanoTime() - eventStart);
+        }
+
+        return new Report(entries, exits, failures, System.nanoTime() - start, latencies.snapshot());
+    }
+
+    private static void checkFieldCount(String[] fields, int expected) {
+        if (fields.length != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " fields but got " + fields.length);
+        }
+    }
+
+    public record Report(long entries, long exits, long failures, long elapsedNanos, LatencyHistogram.Snapshot latencies) {
+
+        public long events() {
+            return entries + exits + failures;
+        }
+
+        public double throughput() {
+            return elapsedNanos == 0 ? 0 : events() * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        // Latency in microseconds at the given percentile, within 3%, 0 when no event was processed
+        public double latencyMicros(double percentile) {
+            return latencies.valueAtPercentile(percentile) / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Processed %d events (%d entries, %d exits, %d rejected) in %.3f s: %.1f events/s,"
+                            + " latency p50=%.1f us p99=%.1f us max=%.1f us",
+                    events(), entries, exits, failures, elapsedNanos / 1_000_000_000.0, throughput(),
+                    latencyMicros(50), latencyMicros(99), latencyMicros(100));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+// A vehicle gone: its closed ticket, with the fare, and the loyalty discount included in the fare
+public record ExitResult(Ticket ticket, int discountPercent) {
+
+    public ParkingSpot parkingSpot() {
+        return ticket.getParkingSpot();
+    }
+
+    public double price() {
+        return ticket.getPrice();
+    }
+
+    public boolean isDiscounted() {
+        return discountPercent > 0;
+    }
+}
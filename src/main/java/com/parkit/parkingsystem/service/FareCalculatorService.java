@@ -1,43 +1,69 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.Ticket;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-
+// Fares are computed on epoch millis and integer cents from the tariff in force, see Tariff for the rules.
+// Each fare reads the current tariff once, a bulk re-pricing uses the same tariff for every ticket.
 public class FareCalculatorService {
 
+    // Number of visits of a recurring user, for callers that only know whether the user is one
+    private static final int RECURRING_USER_VISITS = 2;
+
+    private final TariffEngine tariffEngine;
+
+    public FareCalculatorService() {
+        this(TariffEngine.getDefault());
+    }
+
+    public FareCalculatorService(TariffEngine tariffEngine) {
+        this.tariffEngine = tariffEngine;
+    }
+
     public void calculateFare(Ticket ticket) {
-        calculateFare(ticket, false);
+        calculateFare(ticket, 1);
     }
 
     public void calculateFare(Ticket ticket, boolean isDiscounted) {
+        calculateFare(ticket, isDiscounted ? RECURRING_USER_VISITS : 1);
+    }
+
+    // visitCount: tickets of the vehicle, this one included
+    public void calculateFare(Ticket ticket, int visitCount) {
 
         if( (ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime())) ) {
-            throw new IllegalArgumentException("Out time provided is incorrect:"+ticket.getOutTime().toString());
+            throw new IllegalArgumentException("Out time provided is incorrect:"+ticket.getOutTime());
         }
 
-        long inTimeMillis = ticket.getInTime().getTime();
-        long outTimeMillis = ticket.getOutTime().getTime();
-        long durationInMillis = outTimeMillis - inTimeMillis;
-        double durationInHours = durationInMillis / (1000.0 * 60 * 60);
-
-        if(durationInHours <= 0.5) {
-            ticket.setPrice(0.0);
-        }else {
-            double ratePerHour = switch (ticket.getParkingSpot().getParkingType()) {
-                case CAR -> Fare.CAR_RATE_PER_HOUR;
-                case BIKE -> Fare.BIKE_RATE_PER_HOUR;
-                default -> throw new IllegalArgumentException("Unknown Parking Type");
-            };
-
-            double price = durationInHours * ratePerHour;
-            if (isDiscounted) {
-                price *= 0.95;
-            }
-
-            ticket.setPrice(BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP).doubleValue());
+        long priceCents = calculateFareCents(ticket.getParkingSpot().getParkingType(),
+                ticket.getInTime().getTime(), ticket.getOutTime().getTime(), visitCount);
+        ticket.setPrice(priceCents / 100.0);
+    }
+
+    public long calculateFareCents(ParkingType parkingType, long inTimeMillis, long outTimeMillis, boolean isDiscounted) {
+        return calculateFareCents(parkingType, inTimeMillis, outTimeMillis, isDiscounted ? RECURRING_USER_VISITS : 1);
+    }
+
+    public long calculateFareCents(ParkingType parkingType, long inTimeMillis, long outTimeMillis, int visitCount) {
+        return tariffEngine.getTariff().priceCents(parkingType, inTimeMillis, outTimeMillis, visitCount);
+    }
+
+    // Bulk re-pricing: pricesCents[i] gets the fare of the i-th ticket. Arrays are indexed alike.
+    public void calculateFaresCents(ParkingType[] parkingTypes, long[] inTimesMillis, long[] outTimesMillis,
+                                    int[] visitCounts, long[] pricesCents) {
+        int count = parkingTypes.length;
+        if (inTimesMillis.length != count || outTimesMillis.length != count || visitCounts.length != count
+                || pricesCents.length != count) {
+            throw new IllegalArgumentException("Fare arrays must all have the same length");
+        }
+        Tariff tariff = tariffEngine.getTariff();
+        for (int i = 0; i < count; i++) {
+            pricesCents[i] = tariff.priceCents(parkingTypes[i], inTimesMillis[i], outTimesMillis[i], visitCounts[i]);
         }
     }
-}
\ No newline at end of file
+
+    // Discount a vehicle gets on its visitCount-th visit, in percent
+    public int getDiscountPercent(int visitCount) {
+        return tariffEngine.getTariff().getDiscountPercent(visitCount);
+    }
+}
@@ -0,0 +1,317 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Server mode: every gate terminal connected on TCP (loopback) or a Unix socket is a lane served by its own thread,
+// all lanes sharing one ParkingService. A lane sends one command per line and gets one reply line:
+//   IN <CAR|BIKE> <vehicle registration number> [lot]   -> OK <spot number>
+//   OUT <vehicle registration number>                   -> OK <fare>
+//   FREE <CAR|BIKE> [lot]                               -> OK <free spots>
+//   CLOSE|OPEN <lot> <level>                            -> OK
+//   anything refused                                    -> ERR <reason>
+// Without a lot, IN and FREE are about every lot.
+// Lanes run on virtual threads when the JVM has them (Java 21+), on platform threads otherwise; the build targets
+// Java 17, so they are looked up by reflection. Back-pressure: past maxLanes connections, new terminals wait in the
+// accept backlog; at most maxOperations entries/exits run at once (keep it at most the connection pool size), a
+// lane waiting longer than operationTimeoutMillis for its turn is answered ERR busy.
+public class GateServer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("GateServer");
+
+    private static final LongAdder BUSY_REPLIES = MetricsRegistry.getDefault().counter("gate.operations.busy");
+
+    private final ParkingService parkingService;
+    private final Semaphore lanePermits;
+    private final Semaphore operationPermits;
+    private final long operationTimeoutMillis;
+    private final ThreadFactory laneThreadFactory;
+    private final Set<SocketChannel> lanes = ConcurrentHashMap.newKeySet();
+    private volatile ServerSocketChannel serverChannel;
+    private volatile SocketAddress boundAddress;
+    private volatile Thread acceptThread;
+    private volatile boolean closed;
+
+    public GateServer(ParkingService parkingService, int maxLanes, int maxOperations, long operationTimeoutMillis) {
+        this.parkingService = parkingService;
+        this.lanePermits = new Semaphore(maxLanes);
+        this.operationPermits = new Semaphore(maxOperations, true);
+        this.operationTimeoutMillis = operationTimeoutMillis;
+        ThreadFactory virtualThreadFactory = virtualThreadFactory();
+        this.laneThreadFactory = virtualThreadFactory != null ? virtualThreadFactory : platformThreadFactory();
+        logger.info("Gate lanes run on {} threads", virtualThreadFactory != null ? "virtual" : "platform");
+        MetricsRegistry.getDefault().gauge("gate.lanes.active", lanes::size);
+    }
+
+    // --gate-server <port> for TCP on loopback, or --gate-server unix:<socket path>.
+    // Limits: parkit.gate.maxLanes (default 1000), parkit.gate.maxOperations (default parkit.db.pool.maxSize, 10),
+    // parkit.gate.operationTimeoutMillis (default 5000). Serves until the process is stopped.
+    public static void runGateServer(String[] args, StorageEngine storageEngine) throws Exception {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: --gate-server <port|unix:<socket path>>");
+        }
+        storageEngine.load();
+        ParkingService parkingService = new ParkingService(null, storageEngine, new FareCalculatorService());
+        parkingService.setRenderer(ParkingRenderer.fromSystemProperties(ParkingRenderer.SILENT));
+        GateServer gateServer = new GateServer(parkingService,
+                Integer.getInteger("parkit.gate.maxLanes", 1000),
+                Integer.getInteger("parkit.gate.maxOperations", Integer.getInteger("parkit.db.pool.maxSize", 10)),
+                Long.getLong("parkit.gate.operationTimeoutMillis", 5000));
+        SocketAddress address = args[1].startsWith("unix:")
+                ? UnixDomainSocketAddress.of(args[1].substring("unix:".length()))
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[1]));
+        gateServer.start(address);
+
+        //stopping the process closes the lanes, then lets main close the storage (journal snapshot included)
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            gateServer.close();
+            try {
+                mainThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "gate-server-shutdown"));
+        gateServer.awaitClose();
+    }
+
+    // Binds and starts accepting lanes; returns the bound address (the actual port when 0 was asked)
+    public SocketAddress start(SocketAddress address) throws IOException {
+        ServerSocketChannel channel;
+        if (address instanceof UnixDomainSocketAddress unixAddress) {
+            //a socket file left by a previous run would make the bind fail
+            Files.deleteIfExists(unixAddress.getPath());
+            channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            channel = ServerSocketChannel.open();
+        }
+        channel.bind(address);
+        serverChannel = channel;
+        boundAddress = channel.getLocalAddress();
+        Thread thread = new Thread(this::acceptLanes, "gate-server-accept");
+        thread.setDaemon(true);
+        acceptThread = thread;
+        thread.start();
+        logger.info("Gate server listening on {}", boundAddress);
+        return boundAddress;
+    }
+
+    public void awaitClose() throws InterruptedException {
+        Thread thread = acceptThread;
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    public int getActiveLanes() {
+        return lanes.size();
+    }
+
+    private void acceptLanes() {
+        while (!closed) {
+            try {
+                lanePermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            SocketChannel lane;
+            try {
+                lane = serverChannel.accept();
+            } catch (IOException e) {
+                lanePermits.release();
+                if (!closed) {
+                    logger.error("Error accepting gate connection, the gate server stops", e);
+                }
+                return;
+            }
+            lanes.add(lane);
+            Thread laneThread = laneThreadFactory.newThread(() -> serveLane(lane));
+            laneThread.start();
+        }
+    }
+
+    private void serveLane(SocketChannel lane) {
+        String remote = describe(lane);
+        logger.info("Gate connected from {}", remote);
+        try (lane;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(lane), StandardCharsets.UTF_8));
+             Writer writer = new OutputStreamWriter(Channels.newOutputStream(lane), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                writer.write(handle(line));
+                writer.write('\n');
+                writer.flush();
+            }
+        } catch (ClosedChannelException e) {
+            logger.debug("Gate {} closed by shutdown", remote);
+        } catch (IOException e) {
+            logger.warn("Gate {} disconnected: {}", remote, e.getMessage());
+        } finally {
+            lanes.remove(lane);
+            lanePermits.release();
+            logger.info("Gate disconnected from {}", remote);
+        }
+    }
+
+    // Reply line of one command
+    String handle(String command) {
+        String[] fields = command.split("\\s+");
+        try {
+            String verb = fields[0].toUpperCase(Locale.ROOT);
+            if ("FREE".equals(verb)) {
+                checkFieldCount(fields, 2, 3);
+                return "OK " + parkingService.getAvailableSpots(parseLotNumber(fields, 2), parseParkingType(fields[1]));
+            }
+            if ("CLOSE".equals(verb) || "OPEN".equals(verb)) {
+                checkFieldCount(fields, 3, 3);
+                if (!parkingService.setLevelOpen(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), "OPEN".equals(verb))) {
+                    throw new IllegalStateException("Unable to " + verb.toLowerCase(Locale.ROOT) + " level " + fields[2] + " of lot " + fields[1]);
+                }
+                return "OK";
+            }
+            if (!operationPermits.tryAcquire(operationTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                BUSY_REPLIES.increment();
+                return "ERR busy";
+            }
+            try {
+                switch (verb) {
+                    case "IN" -> {
+                        checkFieldCount(fields, 3, 4);
+                        ParkingSpot parkingSpot = parkingService.enter(parseLotNumber(fields, 3), parseParkingType(fields[1]), fields[2])
+                                .parkingSpot();
+                        return "OK " + parkingSpot.getId();
+                    }
+                    case "OUT" -> {
+                        checkFieldCount(fields, 2, 2);
+                        Ticket ticket = parkingService.processExitingVehicle(fields[1]);
+                        return String.format(Locale.ROOT, "OK %.2f", ticket.getPrice());
+                    }
+                    default -> throw new IllegalArgumentException("Unknown command " + fields[0]);
+                }
+            } finally {
+                operationPermits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERR interrupted";
+        } catch (Exception e) {
+            //a NullPointerException or many an SQLException have no message, the gate gets the exception type instead
+            String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            logger.warn("Gate command '{}' refused: {}", command, reason, e);
+            return "ERR " + reason;
+        }
+    }
+
+    private static ParkingType parseParkingType(String field) {
+        return ParkingType.valueOf(field.toUpperCase(Locale.ROOT));
+    }
+
+    // Lot in the optional field at index, ParkingSpot.ANY_LOT when absent
+    private static int parseLotNumber(String[] fields, int index) {
+        return fields.length > index ? Integer.parseInt(fields[index]) : ParkingSpot.ANY_LOT;
+    }
+
+    private static void checkFieldCount(String[] fields, int min, int max) {
+        if (fields.length < min || fields.length > max) {
+            throw new IllegalArgumentException(min == max ? "Expected " + min + " fields but got " + fields.length
+                    : "Expected " + min + " to " + max + " fields but got " + fields.length);
+        }
+    }
+
+    private static String describe(SocketChannel lane) {
+        try {
+            SocketAddress remote = lane.getRemoteAddress();
+            return remote == null ? "local socket" : remote.toString();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    // Thread.ofVirtual().name("gate-lane-", 0).factory() when the runtime has virtual threads, null otherwise
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "gate-lane-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        AtomicLong laneNumber = new AtomicLong();
+        return runnable -> {
+            //gate connections mostly wait on the network, a small stack is enough
+            Thread thread = new Thread(null, runnable, "gate-lane-" + laneNumber.getAndIncrement(), 256 * 1024);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Error closing gate server socket", e);
+        }
+        for (SocketChannel lane : lanes) {
+            try {
+                lane.close();
+            } catch (IOException e) {
+                logger.warn("Error closing gate connection", e);
+            }
+        }
+        Thread thread = acceptThread;
+        if (thread != null) {
+            //the accept thread may be waiting for a lane permit
+            thread.interrupt();
+        }
+        if (boundAddress instanceof UnixDomainSocketAddress unixAddress) {
+            try {
+                Files.deleteIfExists(unixAddress.getPath());
+            } catch (IOException e) {
+                logger.warn("Unable to remove gate server socket file", e);
+            }
+        }
+    }
+}
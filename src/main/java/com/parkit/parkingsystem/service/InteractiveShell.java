@@ -1,7 +1,6 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.StorageEngine;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,16 +9,16 @@ public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
-    public static void loadInterface(){
+    public static void loadInterface(StorageEngine storageEngine){
         logger.info("ParkingSystemApp initialized");
         System.out.println("\nWelcome to Parking System!\n");
 
         boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
+        storageEngine.load();
         FareCalculatorService fareCalculatorService = new FareCalculatorService();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService);
+        ParkingService parkingService = new ParkingService(inputReaderUtil, storageEngine, fareCalculatorService);
+        parkingService.setRenderer(ParkingRenderer.fromSystemProperties(new ConsoleRenderer(System.out)));
 
         while(continueApp){
             loadMenu();
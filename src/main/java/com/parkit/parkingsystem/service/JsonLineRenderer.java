@@ -0,0 +1,75 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.io.PrintStream;
+
+// One JSON object per line and event, for log shippers and gate controllers reading the output:
+//   {"event":"entry","vehicle":"AB-123","type":"CAR","spot":2,"inTime":1700000000000,"discountPercent":5}
+//   {"event":"exit","vehicle":"AB-123","type":"CAR","spot":2,"inTime":...,"outTime":...,"price":1.43,"discountPercent":5}
+//   {"event":"exitFailed","vehicle":"AB-123"}
+// Times are epoch milliseconds.
+public class JsonLineRenderer implements ParkingRenderer {
+
+    private final PrintStream out;
+
+    public JsonLineRenderer(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void entered(EntryResult entryResult) {
+        StringBuilder line = new StringBuilder(128).append("{\"event\":\"entry\"");
+        appendTicket(line, entryResult.ticket());
+        line.append(",\"discountPercent\":").append(entryResult.discountPercent()).append('}');
+        out.println(line);
+    }
+
+    @Override
+    public void exited(ExitResult exitResult) {
+        StringBuilder line = new StringBuilder(160).append("{\"event\":\"exit\"");
+        appendTicket(line, exitResult.ticket());
+        line.append(",\"outTime\":").append(exitResult.ticket().getOutTime().getTime())
+                .append(",\"price\":").append(exitResult.price())
+                .append(",\"discountPercent\":").append(exitResult.discountPercent()).append('}');
+        out.println(line);
+    }
+
+    @Override
+    public void exitFailed(String vehicleRegNumber) {
+        StringBuilder line = new StringBuilder(64).append("{\"event\":\"exitFailed\",\"vehicle\":");
+        appendString(line, vehicleRegNumber);
+        out.println(line.append('}'));
+    }
+
+    private static void appendTicket(StringBuilder line, Ticket ticket) {
+        line.append(",\"vehicle\":");
+        appendString(line, ticket.getVehicleRegNumber());
+        line.append(",\"type\":\"").append(ticket.getParkingSpot().getParkingType())
+                .append("\",\"spot\":").append(ticket.getParkingSpot().getId())
+                .append(",\"inTime\":").append(ticket.getInTime().getTime());
+    }
+
+    //registration numbers are typed at the gate, anything may come
+    private static void appendString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+}
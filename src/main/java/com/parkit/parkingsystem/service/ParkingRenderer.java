@@ -0,0 +1,34 @@
+package com.parkit.parkingsystem.service;
+
+import java.util.Locale;
+
+// Presentation of entries and exits: ParkingService returns results and hands them here, so that headless callers
+// pay nothing for output. -Dparkit.renderer=console|json|silent overrides the default of a mode.
+public interface ParkingRenderer {
+
+    ParkingRenderer SILENT = new ParkingRenderer() {
+    };
+
+    default void entered(EntryResult entryResult) {
+    }
+
+    default void exited(ExitResult exitResult) {
+    }
+
+    // The ticket of the vehicle could not be closed
+    default void exitFailed(String vehicleRegNumber) {
+    }
+
+    static ParkingRenderer fromSystemProperties(ParkingRenderer defaultRenderer) {
+        String renderer = System.getProperty("parkit.renderer");
+        if (renderer == null) {
+            return defaultRenderer;
+        }
+        return switch (renderer.toLowerCase(Locale.ROOT)) {
+            case "console" -> new ConsoleRenderer(System.out);
+            case "json" -> new JsonLineRenderer(System.out);
+            case "silent" -> SILENT;
+            default -> throw new IllegalArgumentException("Unknown renderer " + renderer);
+        };
+    }
+}
@@ -1,8 +1,15 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.JdbcUnitOfWork;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.StorageEngine;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.dao.UnitOfWork;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
@@ -10,55 +17,241 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
+    // Latency of the unit of work of an entry or exit, prompts excluded; a refused entry is lot full, not failed
+    private static final LatencyHistogram ENTRY_LATENCY = MetricsRegistry.getDefault().histogram("parking.entry.latency");
+    private static final LongAdder ENTRIES = MetricsRegistry.getDefault().counter("parking.entry.success");
+    private static final LongAdder ENTRY_FAILURES = MetricsRegistry.getDefault().counter("parking.entry.failure");
+    private static final LongAdder LOT_FULL_ENTRIES = MetricsRegistry.getDefault().counter("parking.entry.lotFull");
+    private static final LatencyHistogram EXIT_LATENCY = MetricsRegistry.getDefault().histogram("parking.exit.latency");
+    private static final LongAdder EXITS = MetricsRegistry.getDefault().counter("parking.exit.success");
+    private static final LongAdder EXIT_FAILURES = MetricsRegistry.getDefault().counter("parking.exit.failure");
+
+    private static volatile ExecutorService defaultIoExecutor;
+
     private FareCalculatorService fareCalculatorService;
     private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private  TicketDAO ticketDAO;
+    private ParkingSpotRepository parkingSpotDAO;
+    private TicketRepository ticketDAO;
+    private UnitOfWork unitOfWork;
+    private Executor ioExecutor;
+    private ParkingRenderer renderer;
 
     public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO
     , FareCalculatorService fareCalculatorService){
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService, new JdbcUnitOfWork(ticketDAO.dataBaseConfig));
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, StorageEngine storageEngine
+    , FareCalculatorService fareCalculatorService){
+        this(inputReaderUtil, storageEngine.parkingSpotRepository(), storageEngine.ticketRepository(), fareCalculatorService,
+                storageEngine.unitOfWork());
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO
+    , FareCalculatorService fareCalculatorService, UnitOfWork unitOfWork){
         this.inputReaderUtil = inputReaderUtil;
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
         this.fareCalculatorService = fareCalculatorService;
+        this.unitOfWork = unitOfWork;
+        //the prompts of the interactive mode go to the console, so do its results; headless callers print nothing
+        this.renderer = inputReaderUtil != null ? new ConsoleRenderer(System.out) : ParkingRenderer.SILENT;
     }
 
-    public void processIncomingVehicle() {
+    public void setRenderer(ParkingRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    // Returns the entry, null when the vehicle was not parked
+    public EntryResult processIncomingVehicle() {
         try{
             ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
 
             if (parkingSpot !=null && parkingSpot.getId() > 0){
                 String vehicleRegNumber = getVehicleRegNumber();
-                Ticket existingTicket = ticketDAO.getTicket(vehicleRegNumber);
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot); //allot this parking space and mark its availability as false
-                Date inTime = new Date();
-                Ticket newTicket = new Ticket();
-                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
-                newTicket.setParkingSpot(parkingSpot);
-                newTicket.setVehicleRegNumber(vehicleRegNumber);
-                newTicket.setPrice(0);
-                newTicket.setInTime(inTime);
-                newTicket.setOutTime(null);
-                ticketDAO.saveTicket(newTicket);
-
-                if (existingTicket != null) {
-                    System.out.println("\nHappy to see you again! As a regular user of our parking lot, you will enjoy a 5% discount.\n");
-                }
-
-                System.out.println("Generated Ticket and saved in DB\n");
-                System.out.println("Please park your vehicle in spot number: "+parkingSpot.getId());
-                System.out.println("\nRecorded in-time for vehicle number: " + vehicleRegNumber+" is: " + inTime + '\n');
+                EntryResult entryResult = parkVehicle(ParkingSpot.ANY_LOT, parkingSpot.getParkingType(), vehicleRegNumber);
+                renderer.entered(entryResult);
+                return entryResult;
             }
 
         }catch(Exception e){
             logger.error("Unable to process incoming vehicle",e);
         }
+        return null;
+    }
+
+    // Entry without prompts, for gate controllers; throws when the vehicle cannot be parked
+    public ParkingSpot processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber) throws Exception {
+        return enter(parkingType, vehicleRegNumber).parkingSpot();
+    }
+
+    public EntryResult enter(ParkingType parkingType, String vehicleRegNumber) throws Exception {
+        return enter(ParkingSpot.ANY_LOT, parkingType, vehicleRegNumber);
+    }
+
+    // Entry at a gate of one lot, the vehicle being parked in an open level of that lot
+    public EntryResult enter(int lotNumber, ParkingType parkingType, String vehicleRegNumber) throws Exception {
+        if (isLotFull(lotNumber, parkingType)) {
+            LOT_FULL_ENTRIES.increment();
+            throw new LotFullException(lotNumber, parkingType);
+        }
+        EntryResult entryResult = parkVehicle(lotNumber, parkingType, vehicleRegNumber);
+        renderer.entered(entryResult);
+        return entryResult;
+    }
+
+    public CompletableFuture<EntryResult> enterVehicle(ParkingType parkingType, String vehicleRegNumber) {
+        return enterVehicle(ParkingSpot.ANY_LOT, parkingType, vehicleRegNumber);
+    }
+
+    // Asynchronous entry on the I/O executor: completes with the spot and ticket, or exceptionally when the vehicle
+    // cannot be parked
+    public CompletableFuture<EntryResult> enterVehicle(int lotNumber, ParkingType parkingType, String vehicleRegNumber) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return enter(lotNumber, parkingType, vehicleRegNumber);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, getIoExecutor());
+    }
+
+    // Asynchronous exit on the I/O executor, as processExitingVehicle: completes with the closed ticket and its fare
+    public CompletableFuture<ExitResult> exitVehicle(String vehicleRegNumber) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return exit(vehicleRegNumber);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, getIoExecutor());
+    }
+
+    public void setIoExecutor(Executor ioExecutor) {
+        this.ioExecutor = ioExecutor;
+    }
+
+    // The asynchronous API runs there; by default on a pool shared by all services, parkit.service.ioThreads threads
+    // (default parkit.db.pool.maxSize, 10) so that it never waits on the connection pool
+    private Executor getIoExecutor() {
+        if (ioExecutor != null) {
+            return ioExecutor;
+        }
+        ExecutorService executor = defaultIoExecutor;
+        if (executor == null) {
+            synchronized (ParkingService.class) {
+                executor = defaultIoExecutor;
+                if (executor == null) {
+                    AtomicInteger threadNumber = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(
+                            Integer.getInteger("parkit.service.ioThreads", Integer.getInteger("parkit.db.pool.maxSize", 10)),
+                            runnable -> {
+                                Thread thread = new Thread(runnable, "parking-io-" + threadNumber.getAndIncrement());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    defaultIoExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    // Free spots of the type from the in-memory counters, for entrance displays; -1 when not known
+    public int getAvailableSpots(ParkingType parkingType) {
+        return parkingSpotDAO.getAvailableCount(parkingType);
+    }
+
+    public int getAvailableSpots(int lotNumber, ParkingType parkingType) {
+        return lotNumber == ParkingSpot.ANY_LOT ? getAvailableSpots(parkingType)
+                : parkingSpotDAO.getAvailableCount(lotNumber, parkingType);
+    }
+
+    // Closes a level of a lot to new vehicles, or opens it again; the other levels are not affected
+    public boolean setLevelOpen(int lotNumber, int levelNumber, boolean open) {
+        return parkingSpotDAO.setLevelOpen(lotNumber, levelNumber, open);
+    }
+
+    // Fails an entry before any unit of work is opened. The counters are used when known, the storage otherwise;
+    // the allocation stays what actually reserves a spot.
+    public boolean isLotFull(ParkingType parkingType) {
+        int availableCount = parkingSpotDAO.getAvailableCount(parkingType);
+        if (availableCount >= 0) {
+            return availableCount == 0;
+        }
+        return parkingSpotDAO.getNextAvailableSlot(parkingType) <= 0;
+    }
+
+    // For one lot, unknown counters leave the decision to the allocation
+    public boolean isLotFull(int lotNumber, ParkingType parkingType) {
+        if (lotNumber == ParkingSpot.ANY_LOT) {
+            return isLotFull(parkingType);
+        }
+        return parkingSpotDAO.getAvailableCount(lotNumber, parkingType) == 0;
+    }
+
+    private EntryResult parkVehicle(int lotNumber, ParkingType parkingType, String vehicleRegNumber) throws Exception {
+        long start = System.nanoTime();
+        try {
+            EntryResult entryResult = saveEntry(lotNumber, parkingType, vehicleRegNumber);
+            ENTRIES.increment();
+            return entryResult;
+        } catch (LotFullException e) {
+            LOT_FULL_ENTRIES.increment();
+            throw e;
+        } catch (Exception e) {
+            ENTRY_FAILURES.increment();
+            throw e;
+        } finally {
+            ENTRY_LATENCY.record(System.nanoTime() - start);
+        }
+    }
+
+    private EntryResult saveEntry(int lotNumber, ParkingType parkingType, String vehicleRegNumber) throws Exception {
+        Ticket newTicket = new Ticket();
+        //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
+        newTicket.setVehicleRegNumber(vehicleRegNumber);
+        newTicket.setPrice(0);
+        newTicket.setInTime(new Date());
+        newTicket.setOutTime(null);
+
+        //spot allocation and ticket creation are committed together or not at all
+        int previousVisits = unitOfWork.execute(() -> {
+            //another gate may have taken the spot seen before, the allocation is what actually reserves one
+            ParkingSpot allocatedSpot = lotNumber == ParkingSpot.ANY_LOT ? parkingSpotDAO.allocateParkingSpot(parkingType)
+                    : parkingSpotDAO.allocateParkingSpot(lotNumber, parkingType);
+            if (allocatedSpot == null) {
+                throw new LotFullException(lotNumber, parkingType);
+            }
+            newTicket.setParkingSpot(allocatedSpot);
+            int visits = ticketDAO.getNbTickets(vehicleRegNumber);
+            if (!ticketDAO.saveTicket(newTicket)) {
+                throw new IllegalStateException("Unable to save ticket for vehicle " + vehicleRegNumber);
+            }
+            return visits;
+        });
+        return new EntryResult(newTicket, fareCalculatorService.getDiscountPercent(previousVisits + 1));
+    }
+
+    private static final class LotFullException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        private LotFullException(int lotNumber, ParkingType parkingType) {
+            super("No parking spot left for parking type " + parkingType
+                    + (lotNumber == ParkingSpot.ANY_LOT ? "" : " in lot " + lotNumber));
+        }
     }
 
     private String getVehicleRegNumber() throws Exception {
@@ -100,44 +293,87 @@ public class ParkingService {
         };
     }
 
-    public void processExitingVehicle() {
+    // Returns the exit, null when the ticket could not be closed
+    public ExitResult processExitingVehicle() {
         try{
             String vehicleRegNumber = getVehicleRegNumber();
-            Ticket existingTicket = ticketDAO.getTicket(vehicleRegNumber);
-            Date outTime = new Date();
-            existingTicket.setOutTime(outTime);
-            boolean isDiscounted = ticketDAO.getNbTickets(vehicleRegNumber) > 1;
+            ExitResult exitResult = closeTicket(vehicleRegNumber);
 
-            if (isDiscounted) {
-                fareCalculatorService.calculateFare(existingTicket, isDiscounted);
-            } else {
-                fareCalculatorService.calculateFare(existingTicket);
-            }
-
-            if(ticketDAO.updateExitTicket(existingTicket)) {
-                ParkingSpot parkingSpot = existingTicket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
-                displayExitMessage(existingTicket, isDiscounted);
+            if (exitResult != null) {
+                renderer.exited(exitResult);
             }else{
-                System.out.println("Unable to update ticket information. Error occurred");
+                renderer.exitFailed(vehicleRegNumber);
             }
-
+            return exitResult;
         }catch(Exception e){
             logger.error("Unable to process exiting vehicle",e);
         }
+        return null;
+    }
+
+    // Exit without prompts, for gate controllers; returns the closed ticket with its fare
+    public Ticket processExitingVehicle(String vehicleRegNumber) throws Exception {
+        return exit(vehicleRegNumber).ticket();
+    }
+
+    public ExitResult exit(String vehicleRegNumber) throws Exception {
+        return rendered(vehicleRegNumber, closeTicket(vehicleRegNumber));
+    }
+
+    private ExitResult rendered(String vehicleRegNumber, ExitResult exitResult) {
+        if (exitResult == null) {
+            renderer.exitFailed(vehicleRegNumber);
+            throw new IllegalStateException("Unable to update ticket of vehicle " + vehicleRegNumber);
+        }
+        renderer.exited(exitResult);
+        return exitResult;
     }
 
-    private void displayExitMessage(Ticket ticket, boolean isDiscounted) {
-        if (ticket.getPrice() == 0.0) {
-            System.out.println("\nThank you for using our parking. No payment needed.\n");
-        } else if (isDiscounted) {
-            System.out.println("\nPlease pay the parking fare (5% discount included): " + ticket.getPrice() + "€\n");
-        } else {
-            System.out.println("\nPlease pay the parking fare: " + ticket.getPrice() + "€\n");
+    private ExitResult closeTicket(String vehicleRegNumber) throws Exception {
+        //only the active sessions are looked up, however long the ticket history, along with the visit count
+        return timeExit(() -> unitOfWork.execute(() -> {
+            TicketRepository.ExitLookup exitLookup = ticketDAO.getExitLookup(vehicleRegNumber);
+            if (exitLookup.activeTicket() == null) {
+                throw new IllegalStateException("No parked vehicle with registration number " + vehicleRegNumber);
+            }
+            return closeActiveTicket(exitLookup.activeTicket(), exitLookup.visitCount());
+        }));
+    }
+
+    private ExitResult timeExit(UnitOfWork.Work<ExitResult> exit) throws Exception {
+        long start = System.nanoTime();
+        try {
+            ExitResult exitResult = exit.run();
+            if (exitResult != null) {
+                EXITS.increment();
+            } else {
+                EXIT_FAILURES.increment();
+            }
+            return exitResult;
+        } catch (Exception e) {
+            EXIT_FAILURES.increment();
+            throw e;
+        } finally {
+            EXIT_LATENCY.record(System.nanoTime() - start);
+        }
+    }
+
+    // Runs in a unit of work; visitCount: number of tickets of the vehicle, this one included
+    private ExitResult closeActiveTicket(Ticket ticket, int visitCount) {
+        ticket.setOutTime(new Date());
+        //the loyalty tier depends on the number of visits, this one included
+        fareCalculatorService.calculateFare(ticket, visitCount);
+
+        //ticket closing and spot release are committed together or not at all
+        if (!ticketDAO.updateExitTicket(ticket)) {
+            return null;
+        }
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        parkingSpot.setAvailable(true);
+        if (!parkingSpotDAO.updateParking(parkingSpot)) {
+            throw new IllegalStateException("Unable to release parking spot " + parkingSpot.getId());
         }
-        System.out.println("Recorded out-time for vehicle number " + ticket.getVehicleRegNumber() + " is: "
-                + ticket.getOutTime() + "\n");
+        return new ExitResult(ticket, fareCalculatorService.getDiscountPercent(visitCount));
     }
 
 }
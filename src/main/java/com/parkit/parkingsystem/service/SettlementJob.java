@@ -0,0 +1,205 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.dao.TicketRepository.SettlementRevenue;
+import com.parkit.parkingsystem.dao.UnitOfWork;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+// Re-prices the closed tickets that left within a period with the current tariff, after a tariff change or for a
+// dispute. The whole history is read by ticket id in chunks so that visits can be counted along the way: a ticket
+// gets the loyalty discount of its own visit, not of the vehicle's visits since. The tickets of the period in each
+// chunk are priced in parallel on a fork-join pool, then the changed prices are written in one batch and one unit
+// of work. The revenue totals of each parking type are saved at the end of the run, in one more batch. The tariff is
+// read once, the whole run uses the same rules.
+public class SettlementJob {
+
+    private static final Logger logger = LogManager.getLogger("SettlementJob");
+
+    private static final int DEFAULT_CHUNK_SIZE = 5000;
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final TicketRepository ticketRepository;
+    private final UnitOfWork unitOfWork;
+    private final FareCalculatorService fareCalculatorService;
+    private final int parallelism;
+    private final int chunkSize;
+
+    public SettlementJob(TicketRepository ticketRepository, UnitOfWork unitOfWork, TariffEngine tariffEngine,
+                         int parallelism, int chunkSize) {
+        this.ticketRepository = ticketRepository;
+        this.unitOfWork = unitOfWork;
+        this.fareCalculatorService = new FareCalculatorService(new TariffEngine(tariffEngine.getTariff()));
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    // --settle <first day> <last day>, days as yyyy-MM-dd in the local time zone, both included.
+    // Refused on the journaled storage: once restored from a snapshot it only has the latest ticket of each vehicle,
+    // so the visits would be miscounted and loyal customers re-priced as first visits.
+    public static void runSettlement(String[] args, StorageEngine storageEngine) throws Exception {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Usage: --settle <first day> <last day>");
+        }
+        if (storageEngine.type() == StorageEngine.Type.JOURNALED) {
+            throw new IllegalStateException("Settlement needs the whole ticket history, which the journaled storage does not keep");
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        long from = LocalDate.parse(args[1]).atStartOfDay(zone).toInstant().toEpochMilli();
+        long to = LocalDate.parse(args[2]).plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        SettlementJob settlementJob = new SettlementJob(storageEngine.ticketRepository(), storageEngine.unitOfWork(),
+                TariffEngine.getDefault(), Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+        Report report = settlementJob.settle(from, to);
+        logger.info(report);
+        System.out.println(report);
+    }
+
+    // Tickets with an out-time in [fromMillis, toMillis)
+    public Report settle(long fromMillis, long toMillis) throws Exception {
+        long start = System.nanoTime();
+        Map<String, Integer> visitCounts = new HashMap<>();
+        LongAdder[] revenueBefore = newAdders();
+        LongAdder[] revenueAfter = newAdders();
+        long scanned = 0;
+        long inPeriod = 0;
+        long updated = 0;
+        long failed = 0;
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            int afterTicketId = 0;
+            List<Ticket> chunk;
+            do {
+                chunk = ticketRepository.getClosedTickets(afterTicketId, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                afterTicketId = chunk.get(chunk.size() - 1).getId();
+                scanned += chunk.size();
+
+                List<Ticket> selected = new ArrayList<>();
+                List<Integer> selectedVisits = new ArrayList<>();
+                for (Ticket ticket : chunk) {
+                    int visitCount = visitCounts.merge(ticket.getVehicleRegNumber(), 1, Integer::sum);
+                    long outTime = ticket.getOutTime().getTime();
+                    if (outTime >= fromMillis && outTime < toMillis) {
+                        selected.add(ticket);
+                        selectedVisits.add(visitCount);
+                    }
+                }
+                inPeriod += selected.size();
+
+                long[] prices = new long[selected.size()];
+                pool.submit(() -> IntStream.range(0, prices.length).parallel().forEach(i -> {
+                    Ticket ticket = selected.get(i);
+                    ParkingType parkingType = ticket.getParkingSpot().getParkingType();
+                    prices[i] = fareCalculatorService.calculateFareCents(parkingType,
+                            ticket.getInTime().getTime(), ticket.getOutTime().getTime(), selectedVisits.get(i));
+                    revenueBefore[parkingType.ordinal()].add(Math.round(ticket.getPrice() * 100));
+                    revenueAfter[parkingType.ordinal()].add(prices[i]);
+                })).get();
+
+                List<Ticket> repriced = new ArrayList<>();
+                for (int i = 0; i < prices.length; i++) {
+                    Ticket ticket = selected.get(i);
+                    if (prices[i] != Math.round(ticket.getPrice() * 100)) {
+                        ticket.setPrice(prices[i] / 100.0);
+                        repriced.add(ticket);
+                    }
+                }
+                if (!repriced.isEmpty()) {
+                    boolean[] outcomes = unitOfWork.execute(() -> ticketRepository.updateTicketPrices(repriced));
+                    for (boolean outcome : outcomes) {
+                        if (outcome) {
+                            updated++;
+                        } else {
+                            failed++;
+                        }
+                    }
+                }
+                logger.info("Settlement: {} tickets scanned, {} in period, {} re-priced, {} tickets/s",
+                        scanned, inPeriod, updated, String.format(Locale.ROOT, "%.0f", perSecond(scanned, System.nanoTime() - start)));
+            } while (chunk.size() == chunkSize);
+        } finally {
+            pool.shutdown();
+        }
+        Map<ParkingType, Long> revenueBeforeCents = totals(revenueBefore);
+        Map<ParkingType, Long> revenueAfterCents = totals(revenueAfter);
+        saveRevenues(fromMillis, toMillis, revenueBeforeCents, revenueAfterCents);
+        return new Report(scanned, inPeriod, updated, failed, revenueBeforeCents, revenueAfterCents,
+                System.nanoTime() - start);
+    }
+
+    // The prices are already written: a total that cannot be saved is logged, the report still tells it
+    private void saveRevenues(long fromMillis, long toMillis, Map<ParkingType, Long> revenueBeforeCents,
+                              Map<ParkingType, Long> revenueAfterCents) throws Exception {
+        List<SettlementRevenue> revenues = new ArrayList<>();
+        for (ParkingType parkingType : PARKING_TYPES) {
+            revenues.add(new SettlementRevenue(parkingType, fromMillis, toMillis,
+                    revenueBeforeCents.get(parkingType), revenueAfterCents.get(parkingType)));
+        }
+        boolean[] outcomes = unitOfWork.execute(() -> ticketRepository.saveSettlementRevenues(revenues));
+        for (int i = 0; i < outcomes.length; i++) {
+            if (!outcomes[i]) {
+                logger.error("Unable to save the settlement revenue of {}", revenues.get(i).parkingType());
+            }
+        }
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[PARKING_TYPES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static Map<ParkingType, Long> totals(LongAdder[] adders) {
+        Map<ParkingType, Long> totals = new EnumMap<>(ParkingType.class);
+        for (ParkingType parkingType : PARKING_TYPES) {
+            totals.put(parkingType, adders[parkingType.ordinal()].sum());
+        }
+        return totals;
+    }
+
+    private static double perSecond(long count, long elapsedNanos) {
+        return elapsedNanos == 0 ? 0 : count * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    // Revenue in cents by parking type, of the tickets of the period before and after re-pricing
+    public record Report(long scanned, long inPeriod, long updated, long failed,
+                         Map<ParkingType, Long> revenueBeforeCents, Map<ParkingType, Long> revenueAfterCents,
+                         long elapsedNanos) {
+
+        public double throughput() {
+            return perSecond(scanned, elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder revenue = new StringBuilder();
+            for (ParkingType parkingType : PARKING_TYPES) {
+                revenue.append(String.format(Locale.ROOT, ", %s revenue %.2f -> %.2f", parkingType,
+                        revenueBeforeCents.get(parkingType) / 100.0, revenueAfterCents.get(parkingType) / 100.0));
+            }
+            return String.format(Locale.ROOT,
+                    "Settled %d tickets of the period out of %d scanned in %.3f s (%.1f tickets/s): %d re-priced, %d failed",
+                    inPeriod, scanned, elapsedNanos / 1_000_000_000.0, throughput(), updated, failed) + revenue;
+        }
+    }
+}
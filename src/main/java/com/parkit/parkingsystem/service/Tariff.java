@@ -0,0 +1,224 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Pricing rules compiled into lookup tables, so that pricing a stay takes the same time whatever its length.
+// For each parking type the cost of every minute of the day is precomputed, with running totals from midnight:
+// the cost of a stay is a number of whole days plus the difference of two running totals. Costs are kept in units
+// of 1/(MILLIS_PER_HOUR x 100) cent, i.e. hourly rate in cents x band percent per millisecond, so that everything
+// stays exact in integers until the final rounding to the cent.
+//
+// Rules, as properties:
+//   freeMinutes=30                          stays up to this long are free
+//   rate.<TYPE>=150                         hourly rate in cents, required for every parking type
+//   band.<name>.from=22:00 / .to=07:00 / .percent=50
+//                                           percentage of the rate charged in a time-of-day band, bands are applied
+//                                           in name order (a later one wins where they overlap)
+//   dailyCap.<TYPE>=2000                    most charged in cents for each 24 hours of a stay
+//   loyalty.<visits>=5                      discount percent from that many visits on, the current one included
+//   zone=Europe/Paris                       time zone of the bands (default: the system one)
+public final class Tariff {
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final long UNITS_PER_CENT = MILLIS_PER_HOUR * 100;
+    // A price in units times a percent gives cents once divided by this
+    private static final long DISCOUNTED_UNITS_PER_CENT = UNITS_PER_CENT * 100;
+
+    private final long freePeriodMillis;
+    private final ZoneId zone;
+    // No band: every minute costs the same and the time of day is not needed
+    private final boolean flat;
+    // By parking type: cost in units of each minute of the day, and of the day up to each minute (1441 entries)
+    private final long[][] minuteCosts;
+    private final long[][] dayRunningCosts;
+    // By parking type, in units; Long.MAX_VALUE without cap
+    private final long[] dailyCaps;
+    // Loyalty tiers sorted by number of visits, the first one from 0 visits: a tier's discount applies from its number
+    // of visits to the next tier's. Sized by the number of tiers, not by their visits, which come from the rules.
+    private final int[] loyaltyVisits;
+    private final int[] loyaltyDiscounts;
+
+    private Tariff(long freePeriodMillis, ZoneId zone, boolean flat, long[][] minuteCosts, long[] dailyCaps,
+                   int[] loyaltyVisits, int[] loyaltyDiscounts) {
+        this.freePeriodMillis = freePeriodMillis;
+        this.zone = zone;
+        this.flat = flat;
+        this.minuteCosts = minuteCosts;
+        this.dailyCaps = dailyCaps;
+        this.loyaltyVisits = loyaltyVisits;
+        this.loyaltyDiscounts = loyaltyDiscounts;
+        dayRunningCosts = new long[minuteCosts.length][MINUTES_PER_DAY + 1];
+        for (int type = 0; type < minuteCosts.length; type++) {
+            for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+                dayRunningCosts[type][minute + 1] = dayRunningCosts[type][minute] + minuteCosts[type][minute] * MILLIS_PER_MINUTE;
+            }
+        }
+    }
+
+    // Throws IllegalArgumentException on a missing or malformed rule
+    public static Tariff parse(Properties rules) {
+        ParkingType[] parkingTypes = ParkingType.values();
+        long freePeriodMillis = parseLong(rules, "freeMinutes", 0) * MILLIS_PER_MINUTE;
+        String zoneId = rules.getProperty("zone");
+        ZoneId zone = zoneId == null ? ZoneId.systemDefault() : ZoneId.of(zoneId.trim());
+
+        // Percent of the rate charged in each minute of the day
+        int[] minutePercents = new int[MINUTES_PER_DAY];
+        Arrays.fill(minutePercents, 100);
+        TreeSet<String> bandNames = new TreeSet<>();
+        for (String key : rules.stringPropertyNames()) {
+            if (key.startsWith("band.")) {
+                int end = key.lastIndexOf('.');
+                if (end <= "band.".length()) {
+                    throw new IllegalArgumentException("Malformed tariff band rule " + key);
+                }
+                bandNames.add(key.substring("band.".length(), end));
+            }
+        }
+        for (String band : bandNames) {
+            int from = parseMinuteOfDay(rules, "band." + band + ".from");
+            int to = parseMinuteOfDay(rules, "band." + band + ".to");
+            int percent = (int) parseLong(rules, "band." + band + ".percent", -1);
+            if (percent < 0) {
+                throw new IllegalArgumentException("Missing or negative band." + band + ".percent");
+            }
+            int minute = from;
+            do {
+                minutePercents[minute] = percent;
+                minute = (minute + 1) % MINUTES_PER_DAY;
+            } while (minute != to);
+        }
+
+        long[][] minuteCosts = new long[parkingTypes.length][MINUTES_PER_DAY];
+        long[] dailyCaps = new long[parkingTypes.length];
+        for (ParkingType parkingType : parkingTypes) {
+            long rate = parseLong(rules, "rate." + parkingType, -1);
+            if (rate < 0) {
+                throw new IllegalArgumentException("Missing or negative rate." + parkingType);
+            }
+            for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+                minuteCosts[parkingType.ordinal()][minute] = rate * minutePercents[minute];
+            }
+            long dailyCap = parseLong(rules, "dailyCap." + parkingType, -1);
+            dailyCaps[parkingType.ordinal()] = dailyCap < 0 ? Long.MAX_VALUE : Math.multiplyExact(dailyCap, UNITS_PER_CENT);
+        }
+
+        TreeMap<Integer, Integer> loyaltyTiers = new TreeMap<>();
+        loyaltyTiers.put(0, 0);
+        for (String key : rules.stringPropertyNames()) {
+            if (key.startsWith("loyalty.")) {
+                int visits;
+                try {
+                    visits = Integer.parseInt(key.substring("loyalty.".length()).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid number of visits for loyalty tier " + key, e);
+                }
+                int discount = (int) parseLong(rules, key, 0);
+                if (visits < 0 || discount < 0 || discount > 100) {
+                    throw new IllegalArgumentException("Invalid loyalty tier " + key + "=" + discount);
+                }
+                loyaltyTiers.put(visits, discount);
+            }
+        }
+        int[] loyaltyVisits = new int[loyaltyTiers.size()];
+        int[] loyaltyDiscounts = new int[loyaltyTiers.size()];
+        int tier = 0;
+        for (Map.Entry<Integer, Integer> loyaltyTier : loyaltyTiers.entrySet()) {
+            loyaltyVisits[tier] = loyaltyTier.getKey();
+            loyaltyDiscounts[tier++] = loyaltyTier.getValue();
+        }
+
+        boolean flat = true;
+        for (int percent : minutePercents) {
+            flat &= percent == 100;
+        }
+        return new Tariff(freePeriodMillis, zone, flat, minuteCosts, dailyCaps, loyaltyVisits, loyaltyDiscounts);
+    }
+
+    public long getFreePeriodMillis() {
+        return freePeriodMillis;
+    }
+
+    // A binary search over a handful of tiers
+    public int getDiscountPercent(int visitCount) {
+        int tier = Arrays.binarySearch(loyaltyVisits, Math.max(visitCount, 0));
+        return loyaltyDiscounts[tier >= 0 ? tier : -tier - 2];
+    }
+
+    public long priceCents(ParkingType parkingType, long inTimeMillis, long outTimeMillis, int visitCount) {
+        long durationInMillis = outTimeMillis - inTimeMillis;
+        if (durationInMillis < 0) {
+            throw new IllegalArgumentException("Out time provided is incorrect:" + outTimeMillis);
+        }
+        if (durationInMillis <= freePeriodMillis) {
+            return 0;
+        }
+        int type = parkingType.ordinal();
+        long days = durationInMillis / MILLIS_PER_DAY;
+        long remainder = durationInMillis % MILLIS_PER_DAY;
+        long dayCost = Math.min(dayRunningCosts[type][MINUTES_PER_DAY], dailyCaps[type]);
+        long remainderCost;
+        if (flat) {
+            remainderCost = remainder * minuteCosts[type][0];
+        } else {
+            long start = localMillisOfDay(inTimeMillis);
+            long end = start + remainder;
+            remainderCost = end <= MILLIS_PER_DAY
+                    ? runningCost(type, end) - runningCost(type, start)
+                    : runningCost(type, MILLIS_PER_DAY) - runningCost(type, start) + runningCost(type, end - MILLIS_PER_DAY);
+        }
+        long cost = Math.addExact(Math.multiplyExact(days, dayCost), Math.min(remainderCost, dailyCaps[type]));
+        long percent = 100 - getDiscountPercent(visitCount);
+        return (Math.multiplyExact(cost, percent) + DISCOUNTED_UNITS_PER_CENT / 2) / DISCOUNTED_UNITS_PER_CENT;
+    }
+
+    // Cost from midnight to the given time of the day
+    private long runningCost(int type, long millisOfDay) {
+        int minute = (int) (millisOfDay / MILLIS_PER_MINUTE);
+        long cost = dayRunningCosts[type][minute];
+        return minute == MINUTES_PER_DAY ? cost : cost + (millisOfDay % MILLIS_PER_MINUTE) * minuteCosts[type][minute];
+    }
+
+    private long localMillisOfDay(long epochMillis) {
+        long offsetMillis = zone.getRules().getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+        return Math.floorMod(epochMillis + offsetMillis, MILLIS_PER_DAY);
+    }
+
+    private static long parseLong(Properties rules, String key, long defaultValue) {
+        String value = rules.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for tariff rule " + key + ": " + value, e);
+        }
+    }
+
+    private static int parseMinuteOfDay(Properties rules, String key) {
+        String value = rules.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing tariff rule " + key);
+        }
+        try {
+            LocalTime time = LocalTime.parse(value.trim());
+            return time.getHour() * 60 + time.getMinute();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time for tariff rule " + key + ": " + value, e);
+        }
+    }
+}
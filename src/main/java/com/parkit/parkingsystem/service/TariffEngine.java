@@ -0,0 +1,141 @@
+package com.parkit.parkingsystem.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Holds the tariff in force. A tariff read from a file is checked for changes periodically and replaced in one
+// step when it changed, so that fares in progress use either the old or the new rules, never a mix. A file that
+// does not parse is logged and the previous tariff stays in force.
+// The default engine reads -Dparkit.tariff.file when set, checked every parkit.tariff.reloadIntervalSeconds
+// (default 10), and the bundled tariff.properties otherwise.
+public class TariffEngine {
+
+    private static final Logger logger = LogManager.getLogger("TariffEngine");
+
+    private static final String DEFAULT_TARIFF = "tariff.properties";
+
+    private static volatile TariffEngine defaultEngine;
+
+    private final AtomicReference<Tariff> tariff;
+    private final Path file;
+    private volatile FileTime loadedModifiedTime;
+
+    public TariffEngine(Tariff tariff) {
+        this.tariff = new AtomicReference<>(tariff);
+        this.file = null;
+    }
+
+    private TariffEngine(Path file) throws IOException {
+        this.file = file;
+        this.loadedModifiedTime = Files.getLastModifiedTime(file);
+        this.tariff = new AtomicReference<>(readFile(file));
+        logger.info("Loaded tariff from {}", file);
+    }
+
+    public static TariffEngine getDefault() {
+        TariffEngine engine = defaultEngine;
+        if (engine == null) {
+            synchronized (TariffEngine.class) {
+                engine = defaultEngine;
+                if (engine == null) {
+                    engine = createDefault();
+                    defaultEngine = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    private static TariffEngine createDefault() {
+        String tariffFile = System.getProperty("parkit.tariff.file");
+        try {
+            if (tariffFile != null) {
+                return fromFile(Path.of(tariffFile), Long.getLong("parkit.tariff.reloadIntervalSeconds", 10) * 1000);
+            }
+            return new TariffEngine(fromClasspath(DEFAULT_TARIFF));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load tariff " + (tariffFile != null ? tariffFile : DEFAULT_TARIFF), e);
+        }
+    }
+
+    // reloadIntervalMillis <= 0 never checks the file again, reload() can still be called
+    public static TariffEngine fromFile(Path file, long reloadIntervalMillis) throws IOException {
+        TariffEngine engine = new TariffEngine(file);
+        if (reloadIntervalMillis > 0) {
+            ScheduledExecutorService reloadScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tariff-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloadScheduler.scheduleWithFixedDelay(engine::reloadIfModified,
+                    reloadIntervalMillis, reloadIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return engine;
+    }
+
+    public static Tariff fromClasspath(String resource) throws IOException {
+        try (InputStream input = TariffEngine.class.getClassLoader().getResourceAsStream(resource)) {
+            if (input == null) {
+                throw new IOException("Tariff " + resource + " not found on the classpath");
+            }
+            return read(new InputStreamReader(input, StandardCharsets.UTF_8));
+        }
+    }
+
+    public Tariff getTariff() {
+        return tariff.get();
+    }
+
+    // Reads the file again; returns false, keeping the current tariff, when it cannot be read or parsed
+    public boolean reload() {
+        if (file == null) {
+            return false;
+        }
+        try {
+            FileTime modifiedTime = Files.getLastModifiedTime(file);
+            tariff.set(readFile(file));
+            loadedModifiedTime = modifiedTime;
+            logger.info("Reloaded tariff from {}", file);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Invalid tariff in {}, keeping the current one", file, e);
+            return false;
+        }
+    }
+
+    private void reloadIfModified() {
+        try {
+            if (!Files.getLastModifiedTime(file).equals(loadedModifiedTime)) {
+                reload();
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to check tariff file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static Tariff readFile(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    private static Tariff read(Reader reader) throws IOException {
+        Properties rules = new Properties();
+        rules.load(reader);
+        return Tariff.parse(rules);
+    }
+}
@@ -0,0 +1,235 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.dao.TicketListener;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Occupancy per parking type in 15-minute buckets and revenue per parking type and day, kept up to date as tickets
+// are written so that dashboards read the buckets instead of scanning the ticket history.
+// A bucket counts the entries and exits that happened in it and keeps the number of vehicles parked at its end, so a
+// read only touches the buckets of its window. An entry or exit also moves the count of every later bucket: live
+// traffic lands in the latest bucket, only a ticket written late walks further. Revenue goes to the local day of the
+// exit.
+// backfill() rebuilds everything from the history in one streamed pass, then the StorageEngine returned by attach()
+// (or any ObservedTicketRepository) feeds every committed entry and exit. Re-prices made by the settlement job are
+// not followed: backfill again after a settlement.
+public class TicketAnalytics implements TicketListener {
+
+    private static final Logger logger = LogManager.getLogger("TicketAnalytics");
+
+    public static final long BUCKET_MILLIS = 15 * 60 * 1000L;
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final ZoneId zone;
+    // By parking type: counters by bucket number (epoch millis / BUCKET_MILLIS), revenue in cents by epoch day
+    private final List<NavigableMap<Long, Bucket>> occupancy = new ArrayList<>();
+    private final List<NavigableMap<Long, LongAdder>> revenue = new ArrayList<>();
+    private final LongAdder[] parked = new LongAdder[PARKING_TYPES.length];
+
+    public TicketAnalytics() {
+        this(ZoneId.systemDefault());
+    }
+
+    public TicketAnalytics(ZoneId zone) {
+        this.zone = zone;
+        for (int i = 0; i < PARKING_TYPES.length; i++) {
+            occupancy.add(new ConcurrentSkipListMap<>());
+            revenue.add(new ConcurrentSkipListMap<>());
+            parked[i] = new LongAdder();
+        }
+    }
+
+    // Backfills from the storage history, then returns the storage with its entries and exits counted from now on.
+    // Meant for startup, before traffic: a ticket written during the backfill could be counted twice.
+    // Refused on the journaled storage, see requireWholeHistory.
+    public StorageEngine attach(StorageEngine storageEngine) {
+        requireWholeHistory(storageEngine);
+        backfill(storageEngine.ticketRepository());
+        return storageEngine.withTicketListener(this);
+    }
+
+    // Forgets everything and counts the whole ticket history again; returns the number of tickets read
+    public long backfill(TicketRepository ticketRepository) {
+        long start = System.nanoTime();
+        for (int i = 0; i < PARKING_TYPES.length; i++) {
+            occupancy.get(i).clear();
+            revenue.get(i).clear();
+            parked[i].reset();
+        }
+        //the history is counted first, then the vehicles parked are totalled once, bucket after bucket
+        long count = ticketRepository.forEachTicket(ticket -> {
+            entered(ticket, false);
+            if (ticket.getOutTime() != null) {
+                left(ticket, false);
+            }
+        });
+        for (NavigableMap<Long, Bucket> buckets : occupancy) {
+            synchronized (buckets) {
+                long occupied = 0;
+                for (Bucket bucket : buckets.values()) {
+                    occupied += bucket.entries - bucket.exits;
+                    bucket.occupied = occupied;
+                }
+            }
+        }
+        logger.info("Backfilled analytics from {} tickets in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+        return count;
+    }
+
+    @Override
+    public void ticketSaved(Ticket ticket) {
+        entered(ticket, true);
+        if (ticket.getOutTime() != null) {
+            left(ticket, true);
+        }
+    }
+
+    @Override
+    public void ticketClosed(Ticket ticket) {
+        left(ticket, true);
+    }
+
+    private void entered(Ticket ticket, boolean running) {
+        int type = ticket.getParkingSpot().getParkingType().ordinal();
+        count(type, ticket.getInTime().getTime(), 1, running);
+        parked[type].increment();
+    }
+
+    private void left(Ticket ticket, boolean running) {
+        int type = ticket.getParkingSpot().getParkingType().ordinal();
+        long outTime = ticket.getOutTime().getTime();
+        count(type, outTime, -1, running);
+        parked[type].decrement();
+        long epochDay = LocalDate.ofInstant(Instant.ofEpochMilli(outTime), zone).toEpochDay();
+        revenue.get(type).computeIfAbsent(epochDay, day -> new LongAdder()).add(Math.round(ticket.getPrice() * 100));
+    }
+
+    // delta 1 for an entry, -1 for an exit; running false leaves the vehicles parked to the end of the backfill.
+    // Writers of a parking type take turns, readers never wait.
+    private void count(int type, long epochMillis, int delta, boolean running) {
+        NavigableMap<Long, Bucket> buckets = occupancy.get(type);
+        long number = Math.floorDiv(epochMillis, BUCKET_MILLIS);
+        synchronized (buckets) {
+            Bucket bucket = buckets.get(number);
+            if (bucket == null) {
+                bucket = new Bucket();
+                if (running) {
+                    Map.Entry<Long, Bucket> previous = buckets.lowerEntry(number);
+                    bucket.occupied = previous == null ? 0 : previous.getValue().occupied;
+                }
+                buckets.put(number, bucket);
+            }
+            if (delta > 0) {
+                bucket.entries++;
+            } else {
+                bucket.exits++;
+            }
+            if (running) {
+                for (Bucket later : buckets.tailMap(number, true).values()) {
+                    later.occupied += delta;
+                }
+            }
+        }
+    }
+
+    // Vehicles of the type parked right now, as far as the counted tickets tell
+    public long getParked(ParkingType parkingType) {
+        return parked[parkingType.ordinal()].sum();
+    }
+
+    // One entry per 15-minute bucket from the one holding fromMillis to the one before toMillis, empty ones included
+    public List<OccupancyBucket> getOccupancy(ParkingType parkingType, long fromMillis, long toMillis) {
+        NavigableMap<Long, Bucket> buckets = occupancy.get(parkingType.ordinal());
+        long first = Math.floorDiv(fromMillis, BUCKET_MILLIS);
+        long last = Math.floorDiv(toMillis - 1, BUCKET_MILLIS);
+        Map.Entry<Long, Bucket> previous = buckets.lowerEntry(first);
+        long occupied = previous == null ? 0 : previous.getValue().occupied;
+        List<OccupancyBucket> result = new ArrayList<>();
+        for (long number = first; number <= last; number++) {
+            Bucket bucket = buckets.get(number);
+            long entries = 0;
+            long exits = 0;
+            if (bucket != null) {
+                entries = bucket.entries;
+                exits = bucket.exits;
+                occupied = bucket.occupied;
+            }
+            result.add(new OccupancyBucket(number * BUCKET_MILLIS, entries, exits, occupied));
+        }
+        return result;
+    }
+
+    // Revenue in cents of every day from firstDay to lastDay, both included, days without exit at 0
+    public Map<LocalDate, Long> getRevenuePerDay(ParkingType parkingType, LocalDate firstDay, LocalDate lastDay) {
+        NavigableMap<Long, LongAdder> days = revenue.get(parkingType.ordinal());
+        Map<LocalDate, Long> result = new LinkedHashMap<>();
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            LongAdder cents = days.get(day.toEpochDay());
+            result.put(day, cents == null ? 0 : cents.sum());
+        }
+        return result;
+    }
+
+    // --analytics <first day> <last day>, days as yyyy-MM-dd in the local time zone, both included:
+    // revenue and peak occupancy of every day by parking type
+    public static void runReport(String[] args, StorageEngine storageEngine) {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Usage: --analytics <first day> <last day>");
+        }
+        requireWholeHistory(storageEngine);
+        LocalDate firstDay = LocalDate.parse(args[1]);
+        LocalDate lastDay = LocalDate.parse(args[2]);
+        ZoneId zone = ZoneId.systemDefault();
+        TicketAnalytics analytics = new TicketAnalytics(zone);
+        analytics.backfill(storageEngine.ticketRepository());
+        for (ParkingType parkingType : PARKING_TYPES) {
+            Map<LocalDate, Long> revenuePerDay = analytics.getRevenuePerDay(parkingType, firstDay, lastDay);
+            for (Map.Entry<LocalDate, Long> day : revenuePerDay.entrySet()) {
+                long from = day.getKey().atStartOfDay(zone).toInstant().toEpochMilli();
+                long to = day.getKey().plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                long peak = 0;
+                for (OccupancyBucket bucket : analytics.getOccupancy(parkingType, from, to)) {
+                    peak = Math.max(peak, bucket.occupied());
+                }
+                System.out.println(String.format(Locale.ROOT, "%s %s: revenue %.2f, peak occupancy %d",
+                        day.getKey(), parkingType, day.getValue() / 100.0, peak));
+            }
+        }
+    }
+
+    // Once restored from a snapshot the journaled storage only has the latest ticket of each vehicle: a backfill
+    // from it would report revenue and occupancy that are too low
+    private static void requireWholeHistory(StorageEngine storageEngine) {
+        if (storageEngine.type() == StorageEngine.Type.JOURNALED) {
+            throw new IllegalStateException("Analytics need the whole ticket history, which the journaled storage does not keep");
+        }
+    }
+
+    // Written under the lock of its parking type's map
+    private static final class Bucket {
+        private volatile long entries;
+        private volatile long exits;
+        // Vehicles parked at the end of the bucket
+        private volatile long occupied;
+    }
+
+    // occupied: vehicles parked at the end of the bucket
+    public record OccupancyBucket(long startMillis, long entries, long exits, long occupied) {
+    }
+}
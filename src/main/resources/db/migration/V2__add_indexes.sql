@@ -0,0 +1,8 @@
+-- GET_TICKET (latest ticket of a plate) and GET_NB_TICKETS
+create index IDX_TICKET_VEHICLE_IN_TIME on ticket(VEHICLE_REG_NUMBER, IN_TIME);
+
+-- GET_NEXT_PARKING_SPOT: min(PARKING_NUMBER) read from the index
+create index IDX_PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+
+-- Open tickets (OUT_TIME is null), overall or for one plate
+create index IDX_TICKET_OPEN on ticket(OUT_TIME, VEHICLE_REG_NUMBER);
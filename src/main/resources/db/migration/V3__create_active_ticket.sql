@@ -0,0 +1,14 @@
+-- Vehicles currently parked, one open ticket per plate; ticket keeps the full history
+create table if not exists active_ticket(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ TICKET_ID int NOT NULL UNIQUE,
+ PARKING_NUMBER int NOT NULL,
+ IN_TIME DATETIME NOT NULL,
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+
+-- Tickets still open before the upgrade, the latest one when a plate has several
+insert into active_ticket(VEHICLE_REG_NUMBER, TICKET_ID, PARKING_NUMBER, IN_TIME)
+ select t.VEHICLE_REG_NUMBER, t.ID, t.PARKING_NUMBER, t.IN_TIME from ticket t
+ where t.OUT_TIME is null
+ and t.ID = (select max(o.ID) from ticket o where o.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and o.OUT_TIME is null);
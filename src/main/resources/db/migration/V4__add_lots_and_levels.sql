@@ -0,0 +1,10 @@
+-- Several sites and levels: every spot belongs to a lot and a level of it, PARKING_NUMBER stays unique across them.
+-- The spots of the single lot before the upgrade are lot 1, level 0.
+alter table parking add column LOT_NUMBER int default 1 not null;
+alter table parking add column LEVEL_NUMBER int default 0 not null;
+
+-- Levels closed to new vehicles, one row each; a level without a row is open
+create table if not exists closed_level(
+ LOT_NUMBER int NOT NULL,
+ LEVEL_NUMBER int NOT NULL,
+ PRIMARY KEY (LOT_NUMBER, LEVEL_NUMBER));
@@ -0,0 +1,9 @@
+-- Revenue of the tickets of a settled period by parking type, before and after re-pricing: one row per type and run
+create table if not exists settlement_revenue(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ TYPE varchar(10) NOT NULL,
+ PERIOD_START DATETIME NOT NULL,
+ PERIOD_END DATETIME NOT NULL,
+ REVENUE_BEFORE_CENTS bigint NOT NULL,
+ REVENUE_AFTER_CENTS bigint NOT NULL,
+ SETTLED_ON DATETIME NOT NULL);
@@ -0,0 +1,199 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.ConnectionPoolConfig;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ConnectionPoolTest {
+
+    private ConnectionPool connectionPool;
+    private ConnectionPoolConfig config;
+    private List<Connection> createdConnections;
+
+    @BeforeEach
+    void setUp() {
+        createdConnections = new ArrayList<>();
+        config = new ConnectionPoolConfig();
+        config.setMinSize(0);
+        config.setMaxSize(2);
+        config.setMaxWaitMillis(50);
+        config.setValidationIntervalMillis(0);
+        config.setLeakDetectionThresholdMillis(0);
+        config.setHousekeepingPeriodMillis(60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
+    private ConnectionPool createPool() {
+        connectionPool = new ConnectionPool(() -> {
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            when(connection.getAutoCommit()).thenReturn(true);
+            createdConnections.add(connection);
+            return connection;
+        }, config);
+        return connectionPool;
+    }
+
+    @Test
+    void getConnectionReusesReturnedConnection() throws Exception {
+        // Arrange
+        ConnectionPool pool = createPool();
+
+        // Act
+        pool.getConnection().close();
+        pool.getConnection().close();
+
+        // Assert
+        assertEquals(1, createdConnections.size());
+        assertEquals(2, pool.getBorrowCount());
+        assertEquals(1, pool.getIdleConnections());
+        verify(createdConnections.get(0), never()).close();
+    }
+
+    @Test
+    void getConnectionTimesOutWhenPoolExhausted() throws Exception {
+        // Arrange
+        ConnectionPool pool = createPool();
+        pool.getConnection();
+        pool.getConnection();
+
+        // Act & Assert
+        assertThrows(SQLTimeoutException.class, pool::getConnection);
+        assertEquals(1, pool.getTimeoutCount());
+        assertEquals(1.0, pool.getUtilization(), 0.001);
+    }
+
+    @Test
+    void getConnectionDiscardsInvalidIdleConnection() throws Exception {
+        // Arrange
+        ConnectionPool pool = createPool();
+        pool.getConnection().close();
+        Connection broken = createdConnections.get(0);
+        when(broken.isValid(anyInt())).thenReturn(false);
+
+        // Act
+        pool.getConnection();
+
+        // Assert
+        assertEquals(2, createdConnections.size());
+        verify(broken).close();
+        assertEquals(1, pool.getTotalConnections());
+    }
+
+    @Test
+    void closedHandleCannotBeUsedAnymore() throws Exception {
+        // Arrange
+        ConnectionPool pool = createPool();
+        Connection connection = pool.getConnection();
+
+        // Act
+        connection.close();
+
+        // Assert
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, () -> connection.prepareStatement("select 1"));
+        assertEquals(0, pool.getActiveConnections());
+    }
+
+    @Test
+    void returnedConnectionIsRolledBackWhenLeftInTransaction() throws Exception {
+        // Arrange
+        ConnectionPool pool = createPool();
+        Connection connection = pool.getConnection();
+        when(createdConnections.get(0).getAutoCommit()).thenReturn(false);
+
+        // Act
+        connection.close();
+
+        // Assert
+        verify(createdConnections.get(0)).rollback();
+        verify(createdConnections.get(0)).setAutoCommit(true);
+    }
+
+    @Test
+    void housekeepReportsLeakedConnection() throws Exception {
+        // Arrange
+        config.setLeakDetectionThresholdMillis(1);
+        ConnectionPool pool = createPool();
+        pool.getConnection();
+        Thread.sleep(10);
+
+        // Act
+        pool.housekeep();
+        pool.housekeep();
+
+        // Assert
+        assertEquals(1, pool.getLeakCount());
+    }
+
+    @Test
+    void leakDetectionIsOffByDefault() throws Exception {
+        // Arrange: only the threshold left at its default
+        long threshold = new ConnectionPoolConfig().getLeakDetectionThresholdMillis();
+        config.setLeakDetectionThresholdMillis(threshold);
+        ConnectionPool pool = createPool();
+        pool.getConnection();
+        Thread.sleep(10);
+
+        // Act
+        pool.housekeep();
+
+        // Assert
+        assertEquals(0, pool.getLeakCount());
+    }
+
+    @Test
+    void housekeepFillsPoolToMinimumSize() {
+        // Arrange
+        config.setMinSize(2);
+        ConnectionPool pool = createPool();
+
+        // Act
+        pool.housekeep();
+
+        // Assert
+        assertEquals(2, pool.getTotalConnections());
+        assertEquals(2, pool.getIdleConnections());
+    }
+
+    @Test
+    void statementExecutionsAndCommitsAreCountedAsRoundTrips() throws Exception {
+        // Arrange
+        ConnectionPool pool = createPool();
+        Connection connection = pool.getConnection();
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(createdConnections.get(0).prepareStatement("update parking set AVAILABLE=true")).thenReturn(preparedStatement);
+        long roundTrips = MetricsRegistry.getDefault().counter("db.roundTrips").sum();
+
+        // Act
+        PreparedStatement ps = connection.prepareStatement("update parking set AVAILABLE=true");
+        ps.setInt(1, 1);
+        ps.executeUpdate();
+        connection.commit();
+        connection.close();
+
+        // Assert
+        assertEquals(roundTrips + 2, MetricsRegistry.getDefault().counter("db.roundTrips").sum());
+        verify(preparedStatement).executeUpdate();
+    }
+}
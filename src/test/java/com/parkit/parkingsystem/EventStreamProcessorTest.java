@@ -0,0 +1,94 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.service.EventStreamProcessor;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventStreamProcessorTest {
+
+    private EventStreamProcessor eventStreamProcessor;
+
+    @Mock
+    private ParkingService parkingService;
+
+    @BeforeEach
+    void setUp() {
+        eventStreamProcessor = new EventStreamProcessor(parkingService);
+    }
+
+    @Test
+    void processDispatchesEachEventToParkingService() throws Exception {
+        // Arrange
+        String events = """
+                # gate 1
+                IN CAR ABCDEF
+                in bike GHIJKL
+
+                OUT ABCDEF
+                """;
+
+        // Act
+        EventStreamProcessor.Report report = eventStreamProcessor.process(new StringReader(events));
+
+        // Assert
+        verify(parkingService).processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        verify(parkingService).processIncomingVehicle(ParkingType.BIKE, "GHIJKL");
+        verify(parkingService).processExitingVehicle("ABCDEF");
+        assertEquals(2, report.entries());
+        assertEquals(1, report.exits());
+        assertEquals(0, report.failures());
+        assertEquals(3, report.latencies().count());
+    }
+
+    @Test
+    void processCountsRejectedEventsAndCarriesOn() throws Exception {
+        // Arrange
+        when(parkingService.processExitingVehicle("UNKNOWN")).thenThrow(new IllegalStateException("not parked"));
+        String events = """
+                OUT UNKNOWN
+                IN TRUCK ABCDEF
+                PARK ABCDEF
+                IN CAR
+                IN CAR ABCDEF
+                """;
+
+        // Act
+        EventStreamProcessor.Report report = eventStreamProcessor.process(new StringReader(events));
+
+        // Assert
+        assertEquals(1, report.entries());
+        assertEquals(4, report.failures());
+        assertEquals(5, report.events());
+        verify(parkingService, times(1)).processIncomingVehicle(any(ParkingType.class), anyString());
+    }
+
+    @Test
+    void reportPercentilesAreTakenFromLatencyHistogram() {
+        // Arrange
+        LatencyHistogram latencies = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            latencies.record((i + 1) * 1000L);
+        }
+
+        // Act
+        EventStreamProcessor.Report report = new EventStreamProcessor.Report(100, 0, 0, 1_000_000_000L, latencies.snapshot());
+
+        // Assert
+        assertEquals(50.0, report.latencyMicros(50), 50.0 / 32);
+        assertEquals(99.0, report.latencyMicros(99), 99.0 / 32);
+        assertEquals(100.0, report.latencyMicros(100));
+        assertEquals(100.0, report.throughput(), 0.001);
+    }
+}
@@ -11,6 +11,8 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Date;
 
 class FareCalculatorServiceTest {
@@ -214,4 +216,52 @@ class FareCalculatorServiceTest {
         assertEquals(8760.0 * Fare.CAR_RATE_PER_HOUR, ticket.getPrice(), 0.01);
     }
 
+    @Test
+    void calculateFareCentsRoundsHalfUpExactly() {
+        // 40.2 minutes of CAR is exactly 100.5 cents
+        assertEquals(101, fareCalculatorService.calculateFareCents(ParkingType.CAR, 0, 2_412_000, false));
+        // 45 minutes: 112.5 cents, 106.875 with the discount
+        assertEquals(113, fareCalculatorService.calculateFareCents(ParkingType.CAR, 0, 45 * 60_000, false));
+        assertEquals(107, fareCalculatorService.calculateFareCents(ParkingType.CAR, 0, 45 * 60_000, true));
+        assertEquals(0, fareCalculatorService.calculateFareCents(ParkingType.BIKE, 0, 30 * 60_000, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> fareCalculatorService.calculateFareCents(ParkingType.BIKE, 1, 0, false));
+    }
+
+    @Test
+    void calculateFaresCentsMatchesTicketFares() {
+        // Arrange
+        int count = 3000;
+        ParkingType[] parkingTypes = new ParkingType[count];
+        long[] inTimes = new long[count];
+        long[] outTimes = new long[count];
+        int[] visitCounts = new int[count];
+        long[] prices = new long[count];
+        for (int i = 0; i < count; i++) {
+            parkingTypes[i] = i % 2 == 0 ? ParkingType.CAR : ParkingType.BIKE;
+            inTimes[i] = 1_700_000_000_000L;
+            outTimes[i] = inTimes[i] + i * 60_000L;
+            visitCounts[i] = i % 3 == 0 ? 2 : 1;
+        }
+
+        // Act
+        fareCalculatorService.calculateFaresCents(parkingTypes, inTimes, outTimes, visitCounts, prices);
+
+        // Assert: same price as the per-ticket API. The former double arithmetic only differs by one cent, on
+        // exact half cents it rounded down because of floating-point drift (0.855 computed as 0.8549999...)
+        for (int i = 0; i < count; i++) {
+            ticket.setParkingSpot(new ParkingSpot(1, parkingTypes[i], false));
+            ticket.setInTime(new Date(inTimes[i]));
+            ticket.setOutTime(new Date(outTimes[i]));
+            fareCalculatorService.calculateFare(ticket, visitCounts[i]);
+            assertEquals(ticket.getPrice(), prices[i] / 100.0);
+            double hours = i / 60.0;
+            double expected = i <= 30 ? 0 : BigDecimal.valueOf(hours
+                    * (parkingTypes[i] == ParkingType.CAR ? Fare.CAR_RATE_PER_HOUR : Fare.BIKE_RATE_PER_HOUR)
+                    * (visitCounts[i] > 1 ? 0.95 : 1)).setScale(2, RoundingMode.HALF_UP).doubleValue();
+            assertEquals(expected, ticket.getPrice(), 0.011);
+        }
+        assertThrows(IllegalArgumentException.class, () -> fareCalculatorService.calculateFaresCents(
+                parkingTypes, inTimes, outTimes, visitCounts, new long[1]));
+    }
 }
@@ -0,0 +1,125 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.GateServer;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GateServerTest {
+
+    private GateServer gateServer;
+
+    @BeforeEach
+    void setUp() {
+        StorageEngine storageEngine = StorageEngine.inMemory(20, 2);
+        ParkingService parkingService = new ParkingService(null, storageEngine, new FareCalculatorService());
+        gateServer = new GateServer(parkingService, 50, 4, 5000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateServer.close();
+    }
+
+    // Sends the commands on one connection and returns the replies
+    private static List<String> exchange(SocketChannel channel, String... commands) throws Exception {
+        List<String> replies = new ArrayList<>();
+        try (channel;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             Writer writer = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8)) {
+            for (String command : commands) {
+                writer.write(command + "\n");
+                writer.flush();
+                replies.add(reader.readLine());
+            }
+        }
+        return replies;
+    }
+
+    @Test
+    void concurrentLanesShareTheLot() throws Exception {
+        // Arrange
+        SocketAddress address = gateServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        ExecutorService terminals = Executors.newFixedThreadPool(10);
+
+        // Act: 10 terminals park and take out one car each, over their own connection
+        List<Future<List<String>>> lanes = new ArrayList<>();
+        for (int lane = 0; lane < 10; lane++) {
+            String plate = "LANE" + lane;
+            lanes.add(terminals.submit(() -> exchange(SocketChannel.open(address), "IN CAR " + plate, "OUT " + plate)));
+        }
+        List<List<String>> replies = new ArrayList<>();
+        for (Future<List<String>> lane : lanes) {
+            replies.add(lane.get());
+        }
+        terminals.shutdown();
+
+        // Assert: every lane got a spot, the fare of a few milliseconds is free, every spot is back
+        for (List<String> laneReplies : replies) {
+            assertTrue(laneReplies.get(0).matches("OK \\d+"), laneReplies.get(0));
+            assertEquals("OK 0.00", laneReplies.get(1));
+        }
+        assertEquals(List.of("OK 20", "OK 2"), exchange(SocketChannel.open(address), "FREE CAR", "FREE BIKE"));
+    }
+
+    @Test
+    void unixSocketLaneGetsErrorReplies(@TempDir Path directory) throws Exception {
+        // Arrange
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(directory.resolve("gate.sock"));
+        gateServer.start(address);
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.connect(address);
+
+        // Act
+        List<String> replies = exchange(channel, "IN BIKE ABCDEF", "IN BIKE ABCDEF", "OUT GHIJKL", "PAY ABCDEF");
+
+        // Assert
+        assertEquals("OK 21", replies.get(0));
+        assertTrue(replies.get(1).startsWith("ERR "), replies.get(1));
+        assertTrue(replies.get(2).startsWith("ERR No parked vehicle"), replies.get(2));
+        assertEquals("ERR Unknown command PAY", replies.get(3));
+    }
+
+    @Test
+    void exceptionWithoutMessageIsRepliedWithItsType() throws Exception {
+        // Arrange
+        ParkingService parkingService = mock(ParkingService.class);
+        when(parkingService.processExitingVehicle("ABCDEF")).thenThrow(new NullPointerException());
+        try (GateServer failingServer = new GateServer(parkingService, 50, 4, 5000)) {
+            SocketAddress address = failingServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+            // Act
+            List<String> replies = exchange(SocketChannel.open(address), "OUT ABCDEF");
+
+            // Assert
+            assertEquals(List.of("ERR NullPointerException"), replies);
+        }
+    }
+}
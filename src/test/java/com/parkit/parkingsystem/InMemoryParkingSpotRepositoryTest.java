@@ -0,0 +1,70 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.memory.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.memory.InMemoryUnitOfWork;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryParkingSpotRepositoryTest {
+
+    private InMemoryParkingSpotRepository parkingSpotRepository;
+
+    @BeforeEach
+    void setUp() {
+        parkingSpotRepository = InMemoryParkingSpotRepository.withLayout(3, 2);
+    }
+
+    @Test
+    void allocateParkingSpotTakesLowestSpotOfType() {
+        // Act
+        ParkingSpot bikeSpot = parkingSpotRepository.allocateParkingSpot(ParkingType.BIKE);
+
+        // Assert
+        assertEquals(4, bikeSpot.getId());
+        assertFalse(bikeSpot.isAvailable());
+        assertEquals(5, parkingSpotRepository.getNextAvailableSlot(ParkingType.BIKE));
+        assertEquals(1, parkingSpotRepository.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    void allocateParkingSpotInLotWithLevelsOfLayout() {
+        // Arrange: 2 lots of 2 levels, 3 CAR and 2 BIKE spots per level
+        parkingSpotRepository = InMemoryParkingSpotRepository.withLayout(2, 2, 3, 2);
+        parkingSpotRepository.setLevelOpen(2, 0, false);
+
+        // Act
+        ParkingSpot bikeSpot = parkingSpotRepository.allocateParkingSpot(2, ParkingType.BIKE);
+
+        // Assert: lot 2 level 0 holds spots 11 to 15, its level 1 spots 16 to 20
+        assertEquals(19, bikeSpot.getId());
+        assertEquals(2, bikeSpot.getLotNumber());
+        assertEquals(1, bikeSpot.getLevelNumber());
+        assertEquals(1, parkingSpotRepository.getAvailableCount(2, ParkingType.BIKE));
+        assertEquals(12, parkingSpotRepository.getCapacity(ParkingType.CAR));
+    }
+
+    @Test
+    void allocationIsUndoneWhenUnitOfWorkFails() {
+        // Act
+        assertThrows(IllegalStateException.class, () -> new InMemoryUnitOfWork().execute(() -> {
+            parkingSpotRepository.allocateParkingSpot(ParkingType.CAR);
+            throw new IllegalStateException("Unable to save ticket");
+        }));
+
+        // Assert
+        assertEquals(1, parkingSpotRepository.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    void updateParkingRejectsUnknownSpot() {
+        // Act & Assert
+        assertFalse(parkingSpotRepository.updateParking(new ParkingSpot(6, ParkingType.CAR, true)));
+        assertFalse(parkingSpotRepository.updateParking(new ParkingSpot(4, ParkingType.CAR, true)));
+        assertTrue(parkingSpotRepository.updateParking(new ParkingSpot(1, ParkingType.CAR, false)));
+        assertEquals(2, parkingSpotRepository.getNextAvailableSlot(ParkingType.CAR));
+    }
+}
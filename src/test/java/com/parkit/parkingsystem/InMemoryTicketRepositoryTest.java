@@ -0,0 +1,156 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.memory.InMemoryTicketRepository;
+import com.parkit.parkingsystem.dao.memory.InMemoryUnitOfWork;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static com.parkit.parkingsystem.TicketFixture.closedTicket;
+import static com.parkit.parkingsystem.TicketFixture.openTicket;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryTicketRepositoryTest {
+
+    private InMemoryTicketRepository ticketRepository;
+
+    @BeforeEach
+    void setUp() {
+        ticketRepository = new InMemoryTicketRepository();
+    }
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    // Parked an hour ago
+    private static Ticket parkedTicket(String plate) {
+        return openTicket(plate, ParkingType.CAR, System.currentTimeMillis() - HOUR);
+    }
+
+    // Closes the active session of the vehicle at 1.5
+    private boolean exit(String plate) {
+        Ticket activeTicket = ticketRepository.getActiveTicket(plate);
+        activeTicket.setOutTime(new Date());
+        activeTicket.setPrice(1.5);
+        return ticketRepository.updateExitTicket(activeTicket);
+    }
+
+    @Test
+    void openTicketBecomesActiveSession() {
+        // Arrange
+        Ticket ticket = parkedTicket("ABCDEF");
+
+        // Act
+        boolean saved = ticketRepository.saveTicket(ticket);
+
+        // Assert
+        assertTrue(saved);
+        assertEquals(ticket.getId(), ticketRepository.getActiveTicket("ABCDEF").getId());
+    }
+
+    @Test
+    void closingTicketEndsActiveSession() {
+        // Arrange
+        ticketRepository.saveTicket(parkedTicket("ABCDEF"));
+
+        // Act
+        boolean closed = exit("ABCDEF");
+
+        // Assert
+        assertTrue(closed);
+        assertNull(ticketRepository.getActiveTicket("ABCDEF"));
+    }
+
+    @Test
+    void closedTicketKeepsPriceAndOutTime() {
+        // Arrange
+        ticketRepository.saveTicket(parkedTicket("ABCDEF"));
+
+        // Act
+        exit("ABCDEF");
+
+        // Assert
+        assertEquals(1.5, ticketRepository.getTicket("ABCDEF").getPrice());
+        assertNotNull(ticketRepository.getTicket("ABCDEF").getOutTime());
+    }
+
+    @Test
+    void closedTicketCountsAsOneVisit() {
+        // Arrange
+        ticketRepository.saveTicket(parkedTicket("ABCDEF"));
+
+        // Act
+        exit("ABCDEF");
+
+        // Assert
+        assertEquals(1, ticketRepository.getNbTickets("ABCDEF"));
+    }
+
+    @Test
+    void entryAndExitAreEachLogged() {
+        // Arrange
+        ticketRepository.saveTicket(parkedTicket("ABCDEF"));
+
+        // Act
+        exit("ABCDEF");
+
+        // Assert
+        assertEquals(2, ticketRepository.getTicketLogSize());
+    }
+
+    @Test
+    void updateExitTicketRefusesTicketClosedAlready() {
+        // Arrange
+        ticketRepository.saveTicket(parkedTicket("ABCDEF"));
+        Ticket firstExit = ticketRepository.getActiveTicket("ABCDEF");
+        Ticket secondExit = ticketRepository.getActiveTicket("ABCDEF");
+        firstExit.setOutTime(new Date());
+        secondExit.setOutTime(new Date());
+
+        // Act
+        boolean firstClosed = ticketRepository.updateExitTicket(firstExit);
+        boolean secondClosed = ticketRepository.updateExitTicket(secondExit);
+
+        // Assert
+        assertTrue(firstClosed);
+        assertFalse(secondClosed);
+    }
+
+    @Test
+    void saveTicketRefusesSecondActiveSessionForSameVehicle() {
+        // Act & Assert
+        assertTrue(ticketRepository.saveTicket(parkedTicket("ABCDEF")));
+        assertFalse(ticketRepository.saveTicket(parkedTicket("ABCDEF")));
+        assertEquals(1, ticketRepository.getNbTickets("ABCDEF"));
+    }
+
+    @Test
+    void rolledBackTicketLeavesNoTrace() {
+        // Act
+        assertThrows(IllegalStateException.class, () -> new InMemoryUnitOfWork().execute(() -> {
+            ticketRepository.saveTicket(parkedTicket("ABCDEF"));
+            throw new IllegalStateException("Unable to release parking spot");
+        }));
+
+        // Assert
+        assertNull(ticketRepository.getActiveTicket("ABCDEF"));
+        assertNull(ticketRepository.getTicket("ABCDEF"));
+        assertEquals(0, ticketRepository.getNbTickets("ABCDEF"));
+        assertEquals(0, ticketRepository.getTicketLogSize());
+    }
+
+    @Test
+    void saveTicketsOnlyAcceptsClosedTickets() {
+        // Act
+        boolean[] outcomes = ticketRepository.saveTickets(List.of(
+                closedTicket("ABCDEF", ParkingType.CAR, System.currentTimeMillis() - HOUR, System.currentTimeMillis(), 0), parkedTicket("GHIJKL")));
+
+        // Assert
+        assertArrayEquals(new boolean[]{true, false}, outcomes);
+        assertEquals(1, ticketRepository.getNbTickets("ABCDEF"));
+        assertNull(ticketRepository.getActiveTicket("GHIJKL"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionContext;
+import com.parkit.parkingsystem.dao.JdbcUnitOfWork;
+import com.parkit.parkingsystem.dao.UnitOfWork;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JdbcUnitOfWorkTest {
+
+    private UnitOfWork unitOfWork;
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        String url = "jdbc:test:" + UUID.randomUUID();
+        dataBaseConfig = new DataBaseConfig() {
+            @Override
+            protected String getUrl() {
+                return url;
+            }
+
+            @Override
+            protected Connection openConnection() {
+                return connection;
+            }
+        };
+        unitOfWork = new JdbcUnitOfWork(dataBaseConfig);
+    }
+
+    @Test
+    void executeCommitsAndSharesOneConnection() throws Exception {
+        // Act
+        String result = unitOfWork.execute(() -> {
+            Connection first = dataBaseConfig.getConnection();
+            first.prepareStatement("update parking set available = false where PARKING_NUMBER = 1");
+            first.close();
+            Connection second = dataBaseConfig.getConnection();
+            second.prepareStatement("insert into ticket values()");
+            second.close();
+            return "done";
+        });
+
+        // Assert
+        assertEquals("done", result);
+        verify(connection).setAutoCommit(false);
+        verify(connection, times(2)).prepareStatement(anyString());
+        verify(connection).commit();
+        verify(connection, never()).rollback();
+        assertFalse(TransactionContext.isActive());
+        assertEquals(1, dataBaseConfig.getConnectionPool().getBorrowCount());
+        assertEquals(0, dataBaseConfig.getConnectionPool().getActiveConnections());
+    }
+
+    @Test
+    void executeRollsBackWhenWorkFails() throws Exception {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> unitOfWork.execute(() -> {
+            dataBaseConfig.getConnection().prepareStatement("update parking set available = false where PARKING_NUMBER = 1");
+            throw new IllegalStateException("Unable to save ticket");
+        }));
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        assertFalse(TransactionContext.isActive());
+        assertEquals(0, dataBaseConfig.getConnectionPool().getActiveConnections());
+    }
+
+    @Test
+    void executeRollsBackWorkMarkedRollbackOnly() throws Exception {
+        // Act
+        Boolean result = unitOfWork.execute(() -> {
+            dataBaseConfig.getConnection().prepareStatement("update ticket set OUT_TIME = now() where ID = 1");
+            TransactionContext.setRollbackOnly();
+            return false;
+        });
+
+        // Assert
+        assertFalse(result);
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        assertFalse(TransactionContext.isActive());
+    }
+
+    @Test
+    void nestedExecuteJoinsCurrentTransaction() throws Exception {
+        // Act
+        unitOfWork.execute(() -> unitOfWork.execute(() -> dataBaseConfig.getConnection()));
+
+        // Assert
+        verify(connection, times(1)).setAutoCommit(false);
+        verify(connection, times(1)).commit();
+    }
+}
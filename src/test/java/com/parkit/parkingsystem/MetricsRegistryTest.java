@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.MetricsHttpServer;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void histogramPercentilesStayWithinBucketPrecision() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // Act: 1 us to 10 ms, one value per microsecond
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        // Assert
+        assertEquals(10_000, snapshot.count());
+        assertEquals(10_000_000, snapshot.maxNanos());
+        assertEquals(5_000_000, snapshot.valueAtPercentile(50), 5_000_000 / 32.0);
+        assertEquals(9_900_000, snapshot.valueAtPercentile(99), 9_900_000 / 32.0);
+        assertEquals(10_000_000, snapshot.valueAtPercentile(100));
+        assertEquals(5_000_500, snapshot.meanNanos(), 0.001);
+    }
+
+    @Test
+    void snapshotAndTextExposeEveryMetric() {
+        // Arrange
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("parking.entry.success").add(3);
+        registry.gauge("parking.spots.available.CAR", () -> 2);
+        registry.histogram("parking.entry.latency").record(1_500_000);
+
+        // Act
+        Map<String, Double> snapshot = registry.snapshot();
+        String text = registry.renderText();
+
+        // Assert
+        assertEquals(3.0, snapshot.get("parking.entry.success"));
+        assertEquals(2.0, snapshot.get("parking.spots.available.CAR"));
+        assertEquals(1.0, snapshot.get("parking.entry.latency.count"));
+        assertEquals(1500.0, snapshot.get("parking.entry.latency.maxMicros"));
+        assertTrue(text.contains("parking_entry_success_total 3\n"));
+        assertTrue(text.contains("parking_spots_available_CAR 2\n"));
+        assertTrue(text.contains("# TYPE parking_entry_latency_seconds summary\n"));
+        assertTrue(text.contains("parking_entry_latency_seconds_count 1\n"));
+    }
+
+    @Test
+    void httpServerAnswersScrape() throws Exception {
+        // Arrange
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("db.roundTrips").add(7);
+
+        try (MetricsHttpServer server = MetricsHttpServer.start(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), registry)) {
+            // Act
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://127.0.0.1:" + server.getPort() + "/metrics").openConnection();
+            String body;
+            try (InputStream input = connection.getInputStream()) {
+                body = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            // Assert
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(body.contains("db_roundTrips_total 7\n"));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkingJournalTest {
+
+    @TempDir
+    Path journalDir;
+
+    private StorageEngine storageEngine;
+    private ParkingService parkingService;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        storageEngine.close();
+    }
+
+    // Without periodic snapshots, so that the tests decide when the journal is compacted
+    private void open() throws Exception {
+        storageEngine = StorageEngine.journaled(2, 1, journalDir, true, 0);
+        storageEngine.load();
+        parkingService = new ParkingService(null, storageEngine, new FareCalculatorService());
+    }
+
+    // A crash: the journal stays as written, no snapshot is taken
+    private void crash() throws Exception {
+        Path copy = Files.createTempDirectory("parking-journal");
+        Files.copy(journalDir.resolve("journal.log"), copy.resolve("journal.log"));
+        if (Files.exists(journalDir.resolve("snapshot.bin"))) {
+            Files.copy(journalDir.resolve("snapshot.bin"), copy.resolve("snapshot.bin"));
+        }
+        storageEngine.close();
+        Files.deleteIfExists(journalDir.resolve("snapshot.bin"));
+        for (String file : new String[]{"journal.log", "snapshot.bin"}) {
+            if (Files.exists(copy.resolve(file))) {
+                Files.move(copy.resolve(file), journalDir.resolve(file), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    @Test
+    void stateIsReplayedFromJournalAfterCrash() throws Exception {
+        // Arrange
+        open();
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        parkingService.processIncomingVehicle(ParkingType.CAR, "GHIJKL");
+        parkingService.processExitingVehicle("ABCDEF");
+
+        // Act
+        crash();
+        open();
+
+        // Assert
+        assertNull(storageEngine.ticketRepository().getActiveTicket("ABCDEF"));
+        Ticket active = storageEngine.ticketRepository().getActiveTicket("GHIJKL");
+        assertEquals(2, active.getParkingSpot().getId());
+        assertNotNull(storageEngine.ticketRepository().getTicket("ABCDEF").getOutTime());
+        assertEquals(1, storageEngine.parkingSpotRepository().getNextAvailableSlot(ParkingType.CAR));
+        Ticket next = parkingService.processExitingVehicle("GHIJKL");
+        assertEquals(active.getId(), next.getId());
+        assertEquals(3, parkingService.processIncomingVehicle(ParkingType.BIKE, "MNOPQR").getId());
+        assertEquals(3, storageEngine.ticketRepository().getActiveTicket("MNOPQR").getId());
+    }
+
+    @Test
+    void snapshotCompactsJournalAndKeepsVisitCounts() throws Exception {
+        // Arrange
+        open();
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        parkingService.processExitingVehicle("ABCDEF");
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+
+        // Act
+        storageEngine.journal().snapshot();
+        parkingService.processIncomingVehicle(ParkingType.BIKE, "GHIJKL");
+        crash();
+        open();
+
+        // Assert
+        assertEquals(2, storageEngine.ticketRepository().getNbTickets("ABCDEF"));
+        assertEquals(2, storageEngine.ticketRepository().getActiveTicket("ABCDEF").getId());
+        assertEquals(3, storageEngine.ticketRepository().getActiveTicket("GHIJKL").getId());
+        assertEquals(2, storageEngine.parkingSpotRepository().getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(-1, storageEngine.parkingSpotRepository().getNextAvailableSlot(ParkingType.BIKE));
+    }
+
+    @Test
+    void closedLevelStaysClosedAfterCrash() throws Exception {
+        // Arrange
+        open();
+        parkingService.setLevelOpen(1, 0, false);
+
+        // Act
+        crash();
+        open();
+
+        // Assert
+        assertEquals(0, storageEngine.parkingSpotRepository().getAvailableCount(ParkingType.CAR));
+        assertNull(storageEngine.parkingSpotRepository().allocateParkingSpot(ParkingType.CAR));
+    }
+
+    @Test
+    void closedLevelStaysClosedAfterSnapshot() throws Exception {
+        // Arrange
+        open();
+        parkingService.setLevelOpen(1, 0, false);
+
+        // Act
+        storageEngine.journal().snapshot();
+        crash();
+        open();
+
+        // Assert
+        assertEquals(0, Files.size(journalDir.resolve("journal.log")));
+        assertEquals(0, storageEngine.parkingSpotRepository().getAvailableCount(ParkingType.CAR));
+        assertTrue(parkingService.setLevelOpen(1, 0, true));
+        assertEquals(2, storageEngine.parkingSpotRepository().getAvailableCount(ParkingType.CAR));
+    }
+
+    @Test
+    void tornRecordAtEndOfJournalIsDropped() throws Exception {
+        // Arrange
+        open();
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        parkingService.processIncomingVehicle(ParkingType.CAR, "GHIJKL");
+        crash();
+        Path journal = journalDir.resolve("journal.log");
+        long size = Files.size(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        // Act
+        open();
+
+        // Assert: the second entry is lost as a whole, its spot included
+        assertNotNull(storageEngine.ticketRepository().getActiveTicket("ABCDEF"));
+        assertNull(storageEngine.ticketRepository().getActiveTicket("GHIJKL"));
+        assertEquals(0, storageEngine.ticketRepository().getNbTickets("GHIJKL"));
+        assertEquals(2, storageEngine.parkingSpotRepository().getNextAvailableSlot(ParkingType.CAR));
+        assertTrue(Files.size(journal) < size - 3);
+        parkingService.processExitingVehicle("ABCDEF");
+        crash();
+        open();
+        assertNull(storageEngine.ticketRepository().getActiveTicket("ABCDEF"));
+    }
+
+    @Test
+    void concurrentEntriesAreAllDurable() throws Exception {
+        // Arrange
+        storageEngine = StorageEngine.journaled(64, 0, journalDir, true, 0);
+        parkingService = new ParkingService(null, storageEngine, new FareCalculatorService());
+        ExecutorService gates = Executors.newFixedThreadPool(8);
+
+        // Act
+        try {
+            List<Future<?>> entries = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String plate = "CAR" + i;
+                entries.add(gates.submit(() -> parkingService.processIncomingVehicle(ParkingType.CAR, plate)));
+            }
+            for (Future<?> entry : entries) {
+                entry.get();
+            }
+        } finally {
+            gates.shutdown();
+        }
+        crash();
+        storageEngine = StorageEngine.journaled(64, 0, journalDir, true, 0);
+
+        // Assert
+        for (int i = 0; i < 64; i++) {
+            assertNotNull(storageEngine.ticketRepository().getActiveTicket("CAR" + i));
+        }
+        assertEquals(-1, storageEngine.parkingSpotRepository().getNextAvailableSlot(ParkingType.CAR));
+    }
+}
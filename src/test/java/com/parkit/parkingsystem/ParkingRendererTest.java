@@ -0,0 +1,50 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.ConsoleRenderer;
+import com.parkit.parkingsystem.service.EntryResult;
+import com.parkit.parkingsystem.service.ExitResult;
+import com.parkit.parkingsystem.service.JsonLineRenderer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.parkit.parkingsystem.TicketFixture.ticket;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkingRendererTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+
+    @Test
+    void consoleRendererPrintsDiscountAndSpot() {
+        // Arrange
+        ConsoleRenderer renderer = new ConsoleRenderer(out);
+
+        // Act
+        renderer.entered(new EntryResult(ticket(2, ParkingType.CAR, "AB-123", 0, null, 0), 5));
+
+        // Assert
+        String message = output.toString(StandardCharsets.UTF_8);
+        assertTrue(message.contains("you will enjoy a 5% discount."));
+        assertTrue(message.contains("Please park your vehicle in spot number: 2\n"));
+        assertTrue(message.contains("Recorded in-time for vehicle number: AB-123 is: "));
+    }
+
+    @Test
+    void jsonLineRendererWritesOneEscapedLinePerExit() {
+        // Arrange
+        JsonLineRenderer renderer = new JsonLineRenderer(out);
+
+        // Act
+        renderer.exited(new ExitResult(ticket(2, ParkingType.CAR, "AB\"1", 0, 3_600_000L, 1.5), 0));
+
+        // Assert
+        assertEquals("{\"event\":\"exit\",\"vehicle\":\"AB\\\"1\",\"type\":\"CAR\",\"spot\":2,\"inTime\":0,"
+                + "\"outTime\":3600000,\"price\":1.5,\"discountPercent\":0}" + System.lineSeparator(),
+                output.toString(StandardCharsets.UTF_8));
+    }
+}
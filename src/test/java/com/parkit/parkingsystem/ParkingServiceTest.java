@@ -3,9 +3,17 @@ package com.parkit.parkingsystem;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.dao.UnitOfWork;
+import com.parkit.parkingsystem.dao.memory.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.memory.InMemoryUnitOfWork;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.EntryResult;
+import com.parkit.parkingsystem.service.ExitResult;
 import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingRenderer;
 import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +23,10 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -32,6 +44,8 @@ class ParkingServiceTest {
     private TicketDAO ticketDAO;
     @Mock
     private FareCalculatorService fareCalculatorService;
+    @Mock
+    private UnitOfWork unitOfWork;
 
     private String vehicleRegNumber;
     private ArgumentCaptor<ParkingSpot> parkingSpotCaptor;
@@ -44,7 +58,9 @@ class ParkingServiceTest {
             parkingSpotCaptor = ArgumentCaptor.forClass(ParkingSpot.class);
             ticketCaptor = ArgumentCaptor.forClass(Ticket.class);
 
-            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService);
+            lenient().when(unitOfWork.execute(any())).thenAnswer(invocation -> invocation.<UnitOfWork.Work<?>>getArgument(0).run());
+
+            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService, unitOfWork);
         } catch (Exception e) {
             e.printStackTrace();
             throw  new IllegalStateException("Failed to set up test mock objects");
@@ -58,8 +74,8 @@ class ParkingServiceTest {
         when(inputReaderUtil.readSelection()).thenReturn(1);
         when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
-        when(ticketDAO.getTicket(vehicleRegNumber)).thenReturn(null);
-        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+        when(ticketDAO.getNbTickets(vehicleRegNumber)).thenReturn(0);
+        when(parkingSpotDAO.allocateParkingSpot(ParkingType.CAR)).thenReturn(new ParkingSpot(1, ParkingType.CAR, false));
         when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
 
         // Act
@@ -67,12 +83,13 @@ class ParkingServiceTest {
 
         // Assert
         verify(parkingSpotDAO).getNextAvailableSlot(ParkingType.CAR);
-        verify(ticketDAO).getTicket(vehicleRegNumber);
-        verify(parkingSpotDAO).updateParking(parkingSpotCaptor.capture());
-        assertFalse(parkingSpotCaptor.getValue().isAvailable());
+        verify(parkingSpotDAO).allocateParkingSpot(ParkingType.CAR);
+        verify(ticketDAO).getNbTickets(vehicleRegNumber);
+        verify(ticketDAO, never()).getTicket(vehicleRegNumber);
 
         verify(ticketDAO).saveTicket(ticketCaptor.capture());
         assertNotNull(ticketCaptor.getValue().getParkingSpot());
+        assertFalse(ticketCaptor.getValue().getParkingSpot().isAvailable());
         assertEquals(ticketCaptor.getValue().getVehicleRegNumber(), vehicleRegNumber);
         assertEquals(ticketCaptor.getValue().getPrice(), 0);
         assertNotNull(ticketCaptor.getValue().getInTime());
@@ -89,7 +106,7 @@ class ParkingServiceTest {
         parkingService.processIncomingVehicle();
 
         // Assert
-        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO, never()).allocateParkingSpot(any(ParkingType.class));
         verify(ticketDAO, never()).saveTicket(any(Ticket.class));
     }
 
@@ -102,7 +119,7 @@ class ParkingServiceTest {
         parkingService.processIncomingVehicle();
 
         // Assert
-        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO, never()).allocateParkingSpot(any(ParkingType.class));
         verify(ticketDAO, never()).saveTicket(any(Ticket.class));
     }
 
@@ -111,14 +128,13 @@ class ParkingServiceTest {
         // Arrange
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
         Ticket ticket = createTestTicket();
-        when(ticketDAO.getTicket(vehicleRegNumber)).thenReturn(ticket);
-        when(ticketDAO.getNbTickets(vehicleRegNumber)).thenReturn(1);
+        when(ticketDAO.getExitLookup(vehicleRegNumber)).thenReturn(new TicketRepository.ExitLookup(ticket, 1));
 
         doAnswer(invocation -> {
             final Ticket capturedTicket = invocation.getArgument(0);
             capturedTicket.setPrice(1.5);
             return null;
-        }).when(fareCalculatorService).calculateFare(ticket);
+        }).when(fareCalculatorService).calculateFare(ticket, 1);
 
         when(ticketDAO.updateExitTicket(any(Ticket.class))).thenReturn(true);
         when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
@@ -127,9 +143,10 @@ class ParkingServiceTest {
         parkingService.processExitingVehicle();
 
         // Assert
-        verify(ticketDAO).getTicket(vehicleRegNumber);
+        verify(ticketDAO).getExitLookup(vehicleRegNumber);
+        verify(ticketDAO, never()).getTicket(anyString());
         assertNotNull(ticket.getOutTime());
-        verify(fareCalculatorService).calculateFare(ticket);
+        verify(fareCalculatorService).calculateFare(ticket, 1);
         verify(ticketDAO).updateExitTicket(ticket);
         verify(parkingSpotDAO).updateParking(parkingSpotCaptor.capture());
         assertTrue(parkingSpotCaptor.getValue().isAvailable());
@@ -140,14 +157,13 @@ class ParkingServiceTest {
         // Arrange
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
         Ticket ticket = createTestTicket();
-        when(ticketDAO.getTicket(vehicleRegNumber)).thenReturn(ticket);
-        when(ticketDAO.getNbTickets(vehicleRegNumber)).thenReturn(2);
+        when(ticketDAO.getExitLookup(vehicleRegNumber)).thenReturn(new TicketRepository.ExitLookup(ticket, 2));
 
         doAnswer(invocation -> {
             final Ticket capturedTicket = invocation.getArgument(0);
             capturedTicket.setPrice(1.43);
             return null;
-        }).when(fareCalculatorService).calculateFare(ticket, true);
+        }).when(fareCalculatorService).calculateFare(ticket, 2);
 
         when(ticketDAO.updateExitTicket(any(Ticket.class))).thenReturn(true);
         when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
@@ -156,7 +172,7 @@ class ParkingServiceTest {
         parkingService.processExitingVehicle();
 
         // Assert
-        verify(fareCalculatorService).calculateFare(ticket, true);
+        verify(fareCalculatorService).calculateFare(ticket, 2);
     }
 
     @Test
@@ -164,9 +180,8 @@ class ParkingServiceTest {
         // Arrange
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
         Ticket ticket = createTestTicket();
-        when(ticketDAO.getTicket(vehicleRegNumber)).thenReturn(ticket);
-        when(ticketDAO.getNbTickets(vehicleRegNumber)).thenReturn(1);
-        doNothing().when(fareCalculatorService).calculateFare(ticket);
+        when(ticketDAO.getExitLookup(vehicleRegNumber)).thenReturn(new TicketRepository.ExitLookup(ticket, 1));
+        doNothing().when(fareCalculatorService).calculateFare(ticket, 1);
         when(ticketDAO.updateExitTicket(any(Ticket.class))).thenReturn(false);
 
         // Act
@@ -181,17 +196,183 @@ class ParkingServiceTest {
     void processExitingVehicleWhenNoTicketFound() throws Exception {
         // Arrange
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
-        when(ticketDAO.getTicket(vehicleRegNumber)).thenReturn(null);
+        when(ticketDAO.getExitLookup(vehicleRegNumber)).thenReturn(new TicketRepository.ExitLookup(null, 0));
 
         // Act
         parkingService.processExitingVehicle();
 
         // Assert
-        verify(fareCalculatorService, never()).calculateFare(any());
+        verify(fareCalculatorService, never()).calculateFare(any(), anyInt());
         verify(ticketDAO, never()).updateExitTicket(any());
         verify(parkingSpotDAO, never()).updateParking(any());
     }
 
+    @Test
+    void processIncomingVehicleWhenSaveTicketFailsTest() throws Exception {
+        // Arrange: a real unit of work and spots, so that the rollback can be seen releasing the allocated spot
+        InMemoryParkingSpotRepository parkingSpotRepository = InMemoryParkingSpotRepository.withLayout(1, 0);
+        ParkingRenderer renderer = mock(ParkingRenderer.class);
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotRepository, ticketDAO, fareCalculatorService,
+                new InMemoryUnitOfWork());
+        parkingService.setRenderer(renderer);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(false);
+
+        // Act
+        EntryResult entryResult = parkingService.processIncomingVehicle();
+
+        // Assert
+        assertNull(entryResult);
+        verify(ticketDAO).saveTicket(any(Ticket.class));
+        assertEquals(1, parkingSpotRepository.getAvailableCount(ParkingType.CAR));
+        assertEquals(1, parkingSpotRepository.getNextAvailableSlot(ParkingType.CAR));
+        verify(renderer, never()).entered(any());
+    }
+
+    @Test
+    void processIncomingVehicleWhenSpotTakenByAnotherGateTest() throws Exception {
+        // Arrange
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
+        when(parkingSpotDAO.allocateParkingSpot(ParkingType.CAR)).thenReturn(null);
+
+        // Act
+        parkingService.processIncomingVehicle();
+
+        // Assert
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    void processIncomingVehicleWithoutPromptsReturnsAllocatedSpot() throws Exception {
+        // Arrange
+        when(parkingSpotDAO.getAvailableCount(ParkingType.BIKE)).thenReturn(1);
+        when(parkingSpotDAO.allocateParkingSpot(ParkingType.BIKE)).thenReturn(new ParkingSpot(4, ParkingType.BIKE, false));
+        when(ticketDAO.getNbTickets(vehicleRegNumber)).thenReturn(0);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        // Act
+        ParkingSpot parkingSpot = parkingService.processIncomingVehicle(ParkingType.BIKE, vehicleRegNumber);
+
+        // Assert
+        assertEquals(4, parkingSpot.getId());
+        verifyNoInteractions(inputReaderUtil);
+    }
+
+    @Test
+    void processIncomingVehicleWithoutPromptsFailsFastWhenLotFull() throws Exception {
+        // Arrange
+        when(parkingSpotDAO.getAvailableCount(ParkingType.CAR)).thenReturn(0);
+
+        long lotFull = MetricsRegistry.getDefault().counter("parking.entry.lotFull").sum();
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> parkingService.processIncomingVehicle(ParkingType.CAR, vehicleRegNumber));
+        assertEquals(lotFull + 1, MetricsRegistry.getDefault().counter("parking.entry.lotFull").sum());
+        verify(parkingSpotDAO, never()).getNextAvailableSlot(any());
+        verifyNoInteractions(unitOfWork, ticketDAO);
+    }
+
+    @Test
+    void isLotFullQueriesStorageWhenCountersUnknown() {
+        // Arrange
+        when(parkingSpotDAO.getAvailableCount(ParkingType.CAR)).thenReturn(-1);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(2);
+
+        // Act & Assert
+        assertFalse(parkingService.isLotFull(ParkingType.CAR));
+    }
+
+    @Test
+    void processExitingVehicleWithoutPromptsWhenVehicleNotParked() throws Exception {
+        // Arrange
+        when(ticketDAO.getExitLookup(vehicleRegNumber)).thenReturn(new TicketRepository.ExitLookup(null, 0));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> parkingService.processExitingVehicle(vehicleRegNumber));
+        verify(ticketDAO, never()).updateExitTicket(any());
+        verifyNoInteractions(inputReaderUtil);
+    }
+
+    @Test
+    void enterVehicleCompletesWithSpotAndDiscount() throws Exception {
+        // Arrange
+        when(parkingSpotDAO.getAvailableCount(ParkingType.CAR)).thenReturn(3);
+        when(parkingSpotDAO.allocateParkingSpot(ParkingType.CAR)).thenReturn(new ParkingSpot(2, ParkingType.CAR, false));
+        when(ticketDAO.getNbTickets(vehicleRegNumber)).thenReturn(1);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+        when(fareCalculatorService.getDiscountPercent(2)).thenReturn(5);
+
+        // Act
+        EntryResult entryResult = parkingService.enterVehicle(ParkingType.CAR, vehicleRegNumber).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(2, entryResult.parkingSpot().getId());
+        assertEquals(vehicleRegNumber, entryResult.ticket().getVehicleRegNumber());
+        assertTrue(entryResult.isDiscounted());
+        assertEquals(5, entryResult.discountPercent());
+    }
+
+    @Test
+    void exitVehicleCompletesWithPrice() throws Exception {
+        // Arrange
+        Ticket ticket = createTestTicket();
+        when(ticketDAO.getExitLookup(vehicleRegNumber)).thenReturn(new TicketRepository.ExitLookup(ticket, 1));
+        doAnswer(invocation -> {
+            invocation.<Ticket>getArgument(0).setPrice(1.5);
+            return null;
+        }).when(fareCalculatorService).calculateFare(ticket, 1);
+        when(ticketDAO.updateExitTicket(ticket)).thenReturn(true);
+        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+
+        // Act
+        ExitResult exitResult = parkingService.exitVehicle(vehicleRegNumber).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(1.5, exitResult.price());
+        assertFalse(exitResult.isDiscounted());
+        assertNotNull(exitResult.ticket().getOutTime());
+        assertTrue(exitResult.parkingSpot().isAvailable());
+        verify(unitOfWork).execute(any());
+    }
+
+    @Test
+    void exitVehicleCompletesExceptionallyWhenVehicleNotParked() {
+        // Arrange
+        when(ticketDAO.getExitLookup(vehicleRegNumber)).thenReturn(new TicketRepository.ExitLookup(null, 0));
+        parkingService.setIoExecutor(Runnable::run);
+
+        // Act
+        CompletableFuture<ExitResult> exit = parkingService.exitVehicle(vehicleRegNumber);
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, exit::get);
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        verify(ticketDAO, never()).updateExitTicket(any());
+    }
+
+    @Test
+    void processIncomingVehicleReturnsEntryAndHandsItToRenderer() throws Exception {
+        // Arrange
+        ParkingRenderer renderer = mock(ParkingRenderer.class);
+        parkingService.setRenderer(renderer);
+        when(inputReaderUtil.readSelection()).thenReturn(2);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE)).thenReturn(4);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
+        when(parkingSpotDAO.allocateParkingSpot(ParkingType.BIKE)).thenReturn(new ParkingSpot(4, ParkingType.BIKE, false));
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        // Act
+        EntryResult entryResult = parkingService.processIncomingVehicle();
+
+        // Assert
+        assertEquals(4, entryResult.parkingSpot().getId());
+        verify(renderer).entered(entryResult);
+        verifyNoMoreInteractions(renderer);
+    }
+
     private Ticket createTestTicket() {
         Ticket ticket = new Ticket();
         ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
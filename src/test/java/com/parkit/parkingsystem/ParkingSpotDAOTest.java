@@ -1,6 +1,7 @@
 package com.parkit.parkingsystem;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.model.ParkingSpot;
@@ -14,6 +15,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -147,4 +149,122 @@ class ParkingSpotDAOTest {
         verify(preparedStatement).setInt(2, parkingSpot.getId());
         verify(preparedStatement).executeUpdate();
     }
+
+    @Test
+    void getNextAvailableSlotFromLoadedIndex() throws Exception {
+        // Arrange
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getInt(1)).thenReturn(1, 2, 4);
+        when(resultSet.getBoolean(2)).thenReturn(false, true, true);
+        when(resultSet.getString(3)).thenReturn("CAR", "CAR", "BIKE");
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        // Act
+        boolean loaded = parkingSpotDAO.loadParkingSpotIndex();
+        int firstCarSlot = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+        parkingSpotDAO.updateParking(new ParkingSpot(2, ParkingType.CAR, false));
+        int carSlotWhenFull = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+        int bikeSlot = parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE);
+
+        // Assert
+        assertTrue(loaded);
+        assertEquals(2, firstCarSlot);
+        assertEquals(-1, carSlotWhenFull);
+        assertEquals(4, bikeSlot);
+        verify(preparedStatement, times(1)).executeQuery();
+    }
+
+    @Test
+    void loadParkingSpotIndexKeepsClosedLevelsClosed() throws Exception {
+        // Arrange
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt(1)).thenReturn(1, 2);
+        when(resultSet.getBoolean(2)).thenReturn(true, true);
+        when(resultSet.getString(3)).thenReturn("CAR", "CAR");
+        when(resultSet.getInt(4)).thenReturn(1, 1);
+        when(resultSet.getInt(5)).thenReturn(0, 1);
+        when(resultSet.getBoolean(6)).thenReturn(true, false);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        // Act
+        parkingSpotDAO.loadParkingSpotIndex();
+        ParkingSpot parkingSpot = parkingSpotDAO.allocateParkingSpot(1, ParkingType.CAR);
+
+        // Assert: spot 1 is on the closed level 0
+        assertEquals(2, parkingSpot.getId());
+        assertEquals(1, parkingSpot.getLevelNumber());
+        assertEquals(0, parkingSpotDAO.getAvailableCount(1, ParkingType.CAR));
+        assertFalse(parkingSpotDAO.parkingSpotIndex.isLevelOpen(1, 0));
+    }
+
+    @Test
+    void setLevelOpenRecordsClosedLevel() throws Exception {
+        // Arrange
+        parkingSpotDAO.parkingSpotIndex.load(List.of(new ParkingSpot(1, ParkingType.CAR, true, 3, 2)));
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        // Act
+        boolean closed = parkingSpotDAO.setLevelOpen(3, 2, false);
+
+        // Assert
+        assertTrue(closed);
+        verify(connection).prepareStatement(DBConstants.GET_LEVEL_SPOT_COUNT);
+        verify(connection).prepareStatement(DBConstants.CLOSE_LEVEL);
+        verify(preparedStatement, times(2)).setInt(1, 3);
+        verify(preparedStatement, times(2)).setInt(2, 2);
+        assertEquals(0, parkingSpotDAO.getAvailableCount(ParkingType.CAR));
+    }
+
+    @Test
+    void setLevelOpenFailsForLevelWithoutSpots() throws Exception {
+        // Arrange
+        parkingSpotDAO.parkingSpotIndex.load(List.of(new ParkingSpot(1, ParkingType.CAR, true, 3, 2)));
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(0);
+
+        // Act
+        boolean closed = parkingSpotDAO.setLevelOpen(3, 7, false);
+
+        // Assert
+        assertFalse(closed);
+        verify(preparedStatement, never()).executeUpdate();
+        assertEquals(1, parkingSpotDAO.getAvailableCount(ParkingType.CAR));
+    }
+
+    @Test
+    void allocateParkingSpotSkipsSpotAlreadyTakenInDataBase() throws Exception {
+        // Arrange
+        parkingSpotDAO.parkingSpotIndex.load(List.of(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(2, ParkingType.CAR, true)));
+        when(preparedStatement.executeUpdate()).thenReturn(0, 1);
+
+        // Act
+        ParkingSpot parkingSpot = parkingSpotDAO.allocateParkingSpot(ParkingType.CAR);
+
+        // Assert
+        assertEquals(2, parkingSpot.getId());
+        assertFalse(parkingSpot.isAvailable());
+        verify(preparedStatement).setInt(1, 1);
+        verify(preparedStatement).setInt(1, 2);
+        assertEquals(-1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(0, parkingSpotDAO.getAvailableCount(ParkingType.CAR));
+    }
+
+    @Test
+    void allocateParkingSpotReleasesClaimWhenExceptionOccurs() throws Exception {
+        // Arrange
+        parkingSpotDAO.parkingSpotIndex.load(List.of(new ParkingSpot(1, ParkingType.CAR, true)));
+        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("Database error"));
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> parkingSpotDAO.allocateParkingSpot(ParkingType.CAR));
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
 }
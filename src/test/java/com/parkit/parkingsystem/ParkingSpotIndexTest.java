@@ -0,0 +1,166 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkingSpotIndexTest {
+
+    private ParkingSpotIndex parkingSpotIndex;
+
+    @BeforeEach
+    void setUp() {
+        parkingSpotIndex = new ParkingSpotIndex();
+    }
+
+    @Test
+    void claimReturnsLowestAvailableSpotOfType() {
+        // Arrange
+        parkingSpotIndex.load(List.of(
+                new ParkingSpot(1, ParkingType.CAR, false),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.CAR, true),
+                new ParkingSpot(4, ParkingType.BIKE, true)));
+
+        // Act & Assert
+        assertEquals(2, parkingSpotIndex.claim(ParkingType.CAR));
+        assertEquals(3, parkingSpotIndex.claim(ParkingType.CAR));
+        assertEquals(-1, parkingSpotIndex.claim(ParkingType.CAR));
+        assertEquals(4, parkingSpotIndex.nextAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    void availableCountFollowsClaimsAndUpdates() {
+        // Arrange
+        parkingSpotIndex.load(List.of(
+                new ParkingSpot(1, ParkingType.CAR, false),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(65, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.BIKE, true)));
+
+        // Act
+        parkingSpotIndex.claim(ParkingType.CAR);
+        parkingSpotIndex.update(65, ParkingType.CAR, false);
+        parkingSpotIndex.update(65, ParkingType.CAR, false);
+        parkingSpotIndex.release(1, ParkingType.CAR);
+
+        // Assert: updating a spot to the state it already has does not count
+        assertEquals(1, parkingSpotIndex.availableCount(ParkingType.CAR));
+        assertEquals(3, parkingSpotIndex.capacity(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.availableCount(ParkingType.BIKE));
+        assertEquals(1, parkingSpotIndex.capacity(ParkingType.BIKE));
+    }
+
+    @Test
+    void releasedSpotCanBeClaimedAgain() {
+        // Arrange
+        parkingSpotIndex.load(List.of(new ParkingSpot(70, ParkingType.CAR, true)));
+        parkingSpotIndex.claim(ParkingType.CAR);
+
+        // Act
+        parkingSpotIndex.release(70, ParkingType.CAR);
+
+        // Assert
+        assertEquals(70, parkingSpotIndex.claim(ParkingType.CAR));
+    }
+
+    @Test
+    void claimInLotOnlyTakesSpotsOfThatLot() {
+        // Arrange
+        parkingSpotIndex.load(List.of(
+                new ParkingSpot(1, ParkingType.CAR, true, 1, 0),
+                new ParkingSpot(2, ParkingType.CAR, true, 1, 1),
+                new ParkingSpot(100, ParkingType.CAR, true, 2, 0)));
+
+        // Act
+        int firstInLot2 = parkingSpotIndex.claim(2, ParkingType.CAR);
+        int secondInLot2 = parkingSpotIndex.claim(2, ParkingType.CAR);
+
+        // Assert
+        assertEquals(100, firstInLot2);
+        assertEquals(-1, secondInLot2);
+        assertEquals(2, parkingSpotIndex.availableCount(1, ParkingType.CAR));
+        assertEquals(0, parkingSpotIndex.availableCount(2, ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.locate(2, true).getLevelNumber());
+        assertEquals(2, parkingSpotIndex.locate(100, false).getLotNumber());
+    }
+
+    @Test
+    void closedLevelHandsOutNoSpotButTakesReleases() {
+        // Arrange
+        parkingSpotIndex.load(List.of(
+                new ParkingSpot(1, ParkingType.CAR, false, 1, 0),
+                new ParkingSpot(2, ParkingType.CAR, true, 1, 0),
+                new ParkingSpot(3, ParkingType.CAR, true, 1, 1)));
+
+        // Act
+        boolean closed = parkingSpotIndex.setLevelOpen(1, 0, false);
+        parkingSpotIndex.release(1, ParkingType.CAR);
+
+        // Assert: the other level is not affected
+        assertTrue(closed);
+        assertFalse(parkingSpotIndex.isLevelOpen(1, 0));
+        assertEquals(1, parkingSpotIndex.availableCount(ParkingType.CAR));
+        assertEquals(3, parkingSpotIndex.capacity(ParkingType.CAR));
+        assertEquals(3, parkingSpotIndex.nextAvailable(ParkingType.CAR));
+        assertEquals(3, parkingSpotIndex.claim(ParkingType.CAR));
+        assertEquals(-1, parkingSpotIndex.claim(ParkingType.CAR));
+        assertFalse(parkingSpotIndex.setLevelOpen(1, 5, false));
+
+        parkingSpotIndex.setLevelOpen(1, 0, true);
+        assertEquals(2, parkingSpotIndex.availableCount(ParkingType.CAR));
+    }
+
+    @Test
+    void concurrentClaimsNeverHandOutTheSameSpotTwice() throws Exception {
+        // Arrange
+        int spotCount = 1000;
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for (int parkingNumber = 1; parkingNumber <= spotCount; parkingNumber++) {
+            parkingSpots.add(new ParkingSpot(parkingNumber, ParkingType.CAR, true));
+        }
+        parkingSpotIndex.load(parkingSpots);
+        Set<Integer> claimedSpots = ConcurrentHashMap.newKeySet();
+        List<Integer> duplicates = new ArrayList<>();
+        int gates = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(gates);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Act
+        for (int gate = 0; gate < gates; gate++) {
+            executor.submit(() -> {
+                start.await();
+                int parkingNumber;
+                while ((parkingNumber = parkingSpotIndex.claim(ParkingType.CAR)) > 0) {
+                    if (!claimedSpots.add(parkingNumber)) {
+                        synchronized (duplicates) {
+                            duplicates.add(parkingNumber);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Assert
+        assertTrue(duplicates.isEmpty());
+        assertEquals(spotCount, claimedSpots.size());
+        assertEquals(0, parkingSpotIndex.availableCount(ParkingType.CAR));
+    }
+}
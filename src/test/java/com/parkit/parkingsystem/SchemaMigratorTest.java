@@ -0,0 +1,100 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SchemaMigratorTest {
+
+    private SchemaMigrator schemaMigrator;
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+    @Mock
+    private Connection connection;
+    @Mock
+    private Statement statement;
+    @Mock
+    private PreparedStatement preparedStatement;
+    @Mock
+    private ResultSet resultSet;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        schemaMigrator = new SchemaMigrator(dataBaseConfig);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+    }
+
+    @Test
+    void migrateAppliesPendingScriptsAndRecordsTheirVersion() throws Exception {
+        // Arrange
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(DBConstants.GET_SCHEMA_VERSION)).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(connection.prepareStatement(DBConstants.SAVE_SCHEMA_VERSION)).thenReturn(preparedStatement);
+
+        // Act
+        int applied = schemaMigrator.migrate();
+
+        // Assert
+        assertEquals(4, applied);
+        verify(statement).execute(DBConstants.CREATE_SCHEMA_VERSION_TABLE);
+        verify(statement).execute(startsWith("create index IDX_TICKET_VEHICLE_IN_TIME"));
+        verify(statement).execute(startsWith("create table if not exists active_ticket"));
+        verify(statement).execute(startsWith("create table if not exists closed_level"));
+        verify(statement).execute(startsWith("create table if not exists settlement_revenue"));
+        verify(statement, never()).execute(startsWith("create table if not exists parking"));
+        verify(preparedStatement).setInt(1, 2);
+        verify(preparedStatement).setInt(1, 3);
+        verify(preparedStatement).setInt(1, 4);
+        verify(preparedStatement).setInt(1, 5);
+        verify(preparedStatement, times(4)).executeUpdate();
+    }
+
+    @Test
+    void migrateDoesNothingWhenSchemaIsUpToDate() throws Exception {
+        // Arrange
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(DBConstants.GET_SCHEMA_VERSION)).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(5);
+
+        // Act
+        int applied = schemaMigrator.migrate();
+
+        // Assert
+        assertEquals(0, applied);
+        verify(statement, times(1)).execute(anyString());
+        verify(connection, never()).prepareStatement(anyString());
+    }
+
+    @Test
+    void verifySchemaReportsMissingIndexes() throws Exception {
+        // Arrange
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getIndexInfo(any(), isNull(), anyString(), eq(false), eq(false))).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getString("INDEX_NAME")).thenReturn("PRIMARY");
+
+        // Act & Assert
+        assertFalse(schemaMigrator.verifySchema());
+    }
+}
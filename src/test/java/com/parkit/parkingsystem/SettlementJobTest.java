@@ -0,0 +1,156 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.dao.memory.InMemoryTicketRepository;
+import com.parkit.parkingsystem.dao.memory.InMemoryUnitOfWork;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.SettlementJob;
+import com.parkit.parkingsystem.service.Tariff;
+import com.parkit.parkingsystem.service.TariffEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static com.parkit.parkingsystem.TicketFixture.closedTicket;
+import static com.parkit.parkingsystem.TicketFixture.openTicket;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettlementJobTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+
+    private InMemoryTicketRepository ticketRepository;
+    private TariffEngine tariffEngine;
+
+    @BeforeEach
+    void setUp() {
+        ticketRepository = new InMemoryTicketRepository();
+        Properties rules = new Properties();
+        rules.setProperty("rate.CAR", "200");
+        rules.setProperty("rate.BIKE", "100");
+        rules.setProperty("loyalty.2", "10");
+        tariffEngine = new TariffEngine(Tariff.parse(rules));
+    }
+
+    // ABCDEF comes on day 0 and day 1, GHIJKL on day 1 only, MNOPQR on day 2; day 1 is settled
+    private SettlementJob.Report settleDayOne() throws Exception {
+        ticketRepository.saveTickets(List.of(
+                closedTicket("ABCDEF", ParkingType.CAR, 0, HOUR, 1.5),
+                closedTicket("ABCDEF", ParkingType.CAR, DAY, DAY + HOUR, 1.43),
+                closedTicket("GHIJKL", ParkingType.BIKE, DAY, DAY + 2 * HOUR, 2.0),
+                closedTicket("MNOPQR", ParkingType.CAR, 2 * DAY, 2 * DAY + HOUR, 1.5)));
+        SettlementJob settlementJob = new SettlementJob(ticketRepository, new InMemoryUnitOfWork(), tariffEngine, 4, 2);
+        return settlementJob.settle(DAY, 2 * DAY);
+    }
+
+    @Test
+    void settleCountsTicketsScannedInPeriodAndUpdated() throws Exception {
+        // Act
+        SettlementJob.Report report = settleDayOne();
+
+        // Assert
+        assertEquals(4, report.scanned());
+        assertEquals(2, report.inPeriod());
+        assertEquals(1, report.updated());
+        assertEquals(0, report.failed());
+    }
+
+    @Test
+    void settleRepricesTicketWithItsOwnVisitNumber() throws Exception {
+        // Act
+        settleDayOne();
+
+        // Assert: the second visit of ABCDEF keeps its discount
+        assertEquals(1.8, ticketRepository.getTicket("ABCDEF").getPrice());
+        assertEquals(2.0, ticketRepository.getTicket("GHIJKL").getPrice());
+    }
+
+    @Test
+    void settleLeavesTicketsOutsidePeriodAlone() throws Exception {
+        // Act
+        settleDayOne();
+
+        // Assert
+        assertEquals(1.5, ticketRepository.getTicket("MNOPQR").getPrice());
+        assertEquals(1.5, ticketRepository.getClosedTickets(0, 10).get(0).getPrice());
+    }
+
+    @Test
+    void settleReportsRevenueBeforeAndAfter() throws Exception {
+        // Act
+        SettlementJob.Report report = settleDayOne();
+
+        // Assert
+        assertEquals(143, report.revenueBeforeCents().get(ParkingType.CAR));
+        assertEquals(180, report.revenueAfterCents().get(ParkingType.CAR));
+        assertEquals(200, report.revenueAfterCents().get(ParkingType.BIKE));
+    }
+
+    @Test
+    void settleSavesRevenueTotalsOfPeriod() throws Exception {
+        // Act
+        settleDayOne();
+
+        // Assert
+        assertEquals(List.of(
+                new TicketRepository.SettlementRevenue(ParkingType.CAR, DAY, 2 * DAY, 143, 180),
+                new TicketRepository.SettlementRevenue(ParkingType.BIKE, DAY, 2 * DAY, 200, 200)),
+                ticketRepository.getSettlementRevenues());
+    }
+
+    @Test
+    void settleLeavesActiveSessionsAlone() throws Exception {
+        // Arrange
+        ticketRepository.saveTickets(List.of(closedTicket("ABCDEF", ParkingType.CAR, 0, 2 * HOUR, 0)));
+        Ticket parked = openTicket("ABCDEF", ParkingType.CAR, DAY);
+        ticketRepository.saveTicket(parked);
+        SettlementJob settlementJob = new SettlementJob(ticketRepository, new InMemoryUnitOfWork(), tariffEngine, 2, 100);
+
+        // Act
+        SettlementJob.Report report = settlementJob.settle(0, DAY);
+
+        // Assert
+        assertEquals(1, report.updated());
+        assertEquals(4.0, ticketRepository.getClosedTickets(0, 10).get(0).getPrice());
+        assertEquals(parked.getId(), ticketRepository.getActiveTicket("ABCDEF").getId());
+    }
+
+    @Test
+    void settleScalesAcrossManyChunks() throws Exception {
+        // Arrange
+        List<Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            tickets.add(closedTicket("CAR" + i, ParkingType.CAR, i * 1000L, i * 1000L + HOUR, 0));
+        }
+        ticketRepository.saveTickets(tickets);
+        SettlementJob settlementJob = new SettlementJob(ticketRepository, new InMemoryUnitOfWork(), tariffEngine, 4, 1000);
+
+        // Act
+        SettlementJob.Report report = settlementJob.settle(0, Long.MAX_VALUE);
+
+        // Assert
+        assertEquals(10_000, report.updated());
+        assertEquals(10_000 * 200L, report.revenueAfterCents().get(ParkingType.CAR));
+        assertTrue(ticketRepository.getClosedTickets(0, 10_000).stream().allMatch(ticket -> ticket.getPrice() == 2.0));
+    }
+
+    @Test
+    void runSettlementRefusesJournaledStorage(@TempDir Path journalDir) throws Exception {
+        // Arrange
+        try (StorageEngine storageEngine = StorageEngine.journaled(2, 1, journalDir, true, 0)) {
+            storageEngine.load();
+
+            // Act & Assert
+            assertThrows(IllegalStateException.class, () -> SettlementJob.runSettlement(
+                    new String[]{"--settle", "2024-01-01", "2024-01-31"}, storageEngine));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageEngineTest {
+
+    private StorageEngine storageEngine;
+    private ParkingService parkingService;
+
+    @BeforeEach
+    void setUp() {
+        storageEngine = StorageEngine.inMemory(1, 1);
+        storageEngine.load();
+        parkingService = new ParkingService(null, storageEngine, new FareCalculatorService());
+    }
+
+    @Test
+    void parkingFlowRunsOnInMemoryStorage() throws Exception {
+        // Act
+        ParkingSpot parkingSpot = parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        Ticket ticket = parkingService.processExitingVehicle("ABCDEF");
+
+        // Assert
+        assertEquals(StorageEngine.Type.MEMORY, storageEngine.type());
+        assertEquals(1, parkingSpot.getId());
+        assertEquals(1, ticket.getParkingSpot().getId());
+        assertNotNull(ticket.getOutTime());
+        assertEquals(0.0, ticket.getPrice());
+        assertNull(storageEngine.ticketRepository().getActiveTicket("ABCDEF"));
+        assertEquals(1, storageEngine.parkingSpotRepository().getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    void entryIsRejectedWhenTypeIsFull() throws Exception {
+        // Arrange
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> parkingService.processIncomingVehicle(ParkingType.CAR, "GHIJKL"));
+        assertNull(storageEngine.ticketRepository().getActiveTicket("GHIJKL"));
+    }
+
+    @Test
+    void failedEntryReleasesAllocatedSpot() throws Exception {
+        // Arrange
+        storageEngine = StorageEngine.inMemory(2, 0);
+        parkingService = new ParkingService(null, storageEngine, new FareCalculatorService());
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+
+        // Act: the same vehicle cannot have two active sessions
+        assertThrows(IllegalStateException.class, () -> parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF"));
+
+        // Assert
+        assertEquals(2, storageEngine.parkingSpotRepository().getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(1, storageEngine.ticketRepository().getNbTickets("ABCDEF"));
+    }
+}
@@ -0,0 +1,118 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.Tariff;
+import com.parkit.parkingsystem.service.TariffEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TariffEngineTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    @TempDir
+    Path tariffDir;
+
+    private static long at(int day, int hour, int minute) {
+        return ZonedDateTime.of(2024, 3, day, hour, minute, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private static Tariff tariff(String... rules) {
+        Properties properties = new Properties();
+        for (String rule : rules) {
+            String[] keyValue = rule.split("=");
+            properties.setProperty(keyValue[0], keyValue[1]);
+        }
+        return Tariff.parse(properties);
+    }
+
+    @Test
+    void bundledTariffKeepsHistoricalRules() throws Exception {
+        // Act
+        Tariff tariff = TariffEngine.fromClasspath("tariff.properties");
+
+        // Assert
+        assertEquals(30 * MINUTE, tariff.getFreePeriodMillis());
+        assertEquals(0, tariff.priceCents(ParkingType.CAR, 0, 30 * MINUTE, 1));
+        assertEquals(150, tariff.priceCents(ParkingType.CAR, 0, HOUR, 1));
+        assertEquals(100, tariff.priceCents(ParkingType.BIKE, 0, HOUR, 1));
+        assertEquals(143, tariff.priceCents(ParkingType.CAR, 0, HOUR, 2));
+        assertEquals(0, tariff.getDiscountPercent(1));
+        assertEquals(5, tariff.getDiscountPercent(20));
+    }
+
+    @Test
+    void bandsCapsAndLoyaltyTiersAreApplied() {
+        // Arrange: half price from 22:00 to 07:00, at most 10.00 a day, 10% from the 5th visit
+        Tariff tariff = tariff("rate.CAR=100", "rate.BIKE=60", "zone=UTC",
+                "band.night.from=22:00", "band.night.to=07:00", "band.night.percent=50",
+                "dailyCap.CAR=1000", "loyalty.2=5", "loyalty.5=10");
+
+        // Act & Assert
+        // 21:00 to 23:00: one hour full price and one at half price
+        assertEquals(150, tariff.priceCents(ParkingType.CAR, at(1, 21, 0), at(1, 23, 0), 1));
+        // 23:00 to 08:00 across midnight: 8 hours at half price and one at full price
+        assertEquals(500, tariff.priceCents(ParkingType.CAR, at(1, 23, 0), at(2, 8, 0), 1));
+        // one day (15 h x 1.00 + 9 h x 0.50 = 19.50) is capped at 10.00, twice, plus one full-price hour
+        assertEquals(2100, tariff.priceCents(ParkingType.CAR, at(1, 12, 0), at(3, 13, 0), 1));
+        // no cap on bikes: 2 days of 15 h x 0.60 + 9 h x 0.30
+        assertEquals(2 * 1170, tariff.priceCents(ParkingType.BIKE, at(1, 12, 0), at(3, 12, 0), 1));
+        assertEquals(135, tariff.priceCents(ParkingType.CAR, at(1, 21, 0), at(1, 23, 0), 5));
+        assertEquals(143, tariff.priceCents(ParkingType.CAR, at(1, 21, 0), at(1, 23, 0), 4));
+        assertEquals(10, tariff.getDiscountPercent(100));
+        assertThrows(IllegalArgumentException.class, () -> tariff("rate.CAR=100"));
+        assertThrows(IllegalArgumentException.class, () -> tariff("rate.CAR=100", "rate.BIKE=60", "band.x.from=25:00"));
+    }
+
+    @Test
+    void loyaltyTierWithHugeNumberOfVisitsIsLookedUpWithoutTable() {
+        // Arrange
+        Tariff tariff = tariff("rate.CAR=100", "rate.BIKE=60", "loyalty.3=5", "loyalty.2147483647=20");
+
+        // Act & Assert
+        assertEquals(0, tariff.getDiscountPercent(-1));
+        assertEquals(0, tariff.getDiscountPercent(2));
+        assertEquals(5, tariff.getDiscountPercent(3));
+        assertEquals(5, tariff.getDiscountPercent(2_000_000_000));
+        assertEquals(20, tariff.getDiscountPercent(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void loyaltyTierWithInvalidNumberOfVisitsIsRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> tariff("rate.CAR=100", "rate.BIKE=60", "loyalty.3000000000=5"));
+        assertThrows(IllegalArgumentException.class, () -> tariff("rate.CAR=100", "rate.BIKE=60", "loyalty.-1=5"));
+    }
+
+    @Test
+    void reloadSwapsTariffAndKeepsPreviousOneWhenFileIsInvalid() throws Exception {
+        // Arrange
+        Path file = tariffDir.resolve("tariff.properties");
+        Files.writeString(file, "rate.CAR=150\nrate.BIKE=100\n");
+        TariffEngine tariffEngine = TariffEngine.fromFile(file, 0);
+        Tariff initial = tariffEngine.getTariff();
+
+        // Act
+        Files.writeString(file, "rate.CAR=300\nrate.BIKE=100\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        boolean reloaded = tariffEngine.reload();
+        Files.writeString(file, "rate.CAR=oops\n");
+        boolean reloadedInvalid = tariffEngine.reload();
+
+        // Assert
+        assertTrue(reloaded);
+        assertFalse(reloadedInvalid);
+        assertEquals(150, initial.priceCents(ParkingType.CAR, 0, HOUR, 1));
+        assertEquals(300, tariffEngine.getTariff().priceCents(ParkingType.CAR, 0, HOUR, 1));
+    }
+}
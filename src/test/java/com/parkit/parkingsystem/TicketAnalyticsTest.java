@@ -0,0 +1,200 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ObservedTicketRepository;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.dao.memory.InMemoryTicketRepository;
+import com.parkit.parkingsystem.dao.memory.InMemoryUnitOfWork;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.TicketAnalytics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static com.parkit.parkingsystem.TicketFixture.closedTicket;
+import static com.parkit.parkingsystem.TicketFixture.openTicket;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketAnalyticsTest {
+
+    private static final long QUARTER = TicketAnalytics.BUCKET_MILLIS;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private InMemoryTicketRepository ticketRepository;
+    private TicketAnalytics ticketAnalytics;
+
+    @BeforeEach
+    void setUp() {
+        ticketRepository = new InMemoryTicketRepository();
+        ticketAnalytics = new TicketAnalytics(ZoneOffset.UTC);
+    }
+
+    // Two cars overlap in the second quarter, one still parked; a bike leaves the next day
+    private void saveHistory() {
+        ticketRepository.saveTickets(List.of(
+                closedTicket("ABCDEF", ParkingType.CAR, 0, 2 * QUARTER, 1.5),
+                closedTicket("BIKE01", ParkingType.BIKE, DAY - QUARTER, DAY + QUARTER, 2.25)));
+        ticketRepository.saveTicket(openTicket("GHIJKL", ParkingType.CAR, QUARTER + 1000));
+    }
+
+    @Test
+    void backfillReadsEveryTicket() {
+        // Arrange
+        saveHistory();
+
+        // Act
+        long count = ticketAnalytics.backfill(ticketRepository);
+
+        // Assert
+        assertEquals(3, count);
+    }
+
+    @Test
+    void backfillCountsEntriesExitsAndOccupancyPerQuarter() {
+        // Arrange
+        saveHistory();
+
+        // Act
+        ticketAnalytics.backfill(ticketRepository);
+
+        // Assert
+        assertEquals(List.of(
+                new TicketAnalytics.OccupancyBucket(0, 1, 0, 1),
+                new TicketAnalytics.OccupancyBucket(QUARTER, 1, 0, 2),
+                new TicketAnalytics.OccupancyBucket(2 * QUARTER, 0, 1, 1)),
+                ticketAnalytics.getOccupancy(ParkingType.CAR, 0, 3 * QUARTER));
+    }
+
+    @Test
+    void backfillCountsVehiclesStillParked() {
+        // Arrange
+        saveHistory();
+
+        // Act
+        ticketAnalytics.backfill(ticketRepository);
+
+        // Assert
+        assertEquals(1, ticketAnalytics.getParked(ParkingType.CAR));
+        assertEquals(0, ticketAnalytics.getParked(ParkingType.BIKE));
+    }
+
+    @Test
+    void backfillAddsRevenueToTheDayOfExit() {
+        // Arrange
+        saveHistory();
+
+        // Act
+        ticketAnalytics.backfill(ticketRepository);
+
+        // Assert
+        Map<LocalDate, Long> bikeRevenue = ticketAnalytics.getRevenuePerDay(ParkingType.BIKE,
+                LocalDate.of(1970, 1, 1), LocalDate.of(1970, 1, 2));
+        assertEquals(Map.of(LocalDate.of(1970, 1, 1), 0L, LocalDate.of(1970, 1, 2), 225L), bikeRevenue);
+    }
+
+    @Test
+    void ticketWrittenLateCountsInEveryLaterBucket() {
+        // Arrange
+        saveHistory();
+        ticketAnalytics.backfill(ticketRepository);
+
+        // Act
+        ticketAnalytics.ticketSaved(openTicket("MNOPQR", ParkingType.CAR, 0));
+
+        // Assert
+        assertEquals(List.of(
+                new TicketAnalytics.OccupancyBucket(QUARTER, 1, 0, 3),
+                new TicketAnalytics.OccupancyBucket(2 * QUARTER, 0, 1, 2),
+                new TicketAnalytics.OccupancyBucket(3 * QUARTER, 0, 0, 2)),
+                ticketAnalytics.getOccupancy(ParkingType.CAR, QUARTER, 4 * QUARTER));
+    }
+
+    @Test
+    void committedEntryAndExitAreCounted() throws Exception {
+        // Arrange
+        ObservedTicketRepository observedRepository = new ObservedTicketRepository(ticketRepository, ticketAnalytics);
+        InMemoryUnitOfWork unitOfWork = new InMemoryUnitOfWork();
+        ticketAnalytics.backfill(ticketRepository);
+        Ticket entry = openTicket("ABCDEF", ParkingType.CAR, 0);
+
+        // Act
+        unitOfWork.execute(() -> observedRepository.saveTicket(entry));
+        entry.setOutTime(new Date(QUARTER));
+        unitOfWork.execute(() -> observedRepository.updateExitTicket(entry));
+
+        // Assert
+        assertEquals(List.of(
+                new TicketAnalytics.OccupancyBucket(0, 1, 0, 1),
+                new TicketAnalytics.OccupancyBucket(QUARTER, 0, 1, 0)),
+                ticketAnalytics.getOccupancy(ParkingType.CAR, 0, 2 * QUARTER));
+        assertEquals(0, ticketAnalytics.getParked(ParkingType.CAR));
+    }
+
+    @Test
+    void rolledBackEntryIsNotCounted() throws Exception {
+        // Arrange
+        ObservedTicketRepository observedRepository = new ObservedTicketRepository(ticketRepository, ticketAnalytics);
+        InMemoryUnitOfWork unitOfWork = new InMemoryUnitOfWork();
+        ticketAnalytics.backfill(ticketRepository);
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> unitOfWork.execute(() -> {
+            observedRepository.saveTicket(openTicket("GHIJKL", ParkingType.CAR, 0));
+            throw new IllegalStateException("entry aborted");
+        }));
+
+        // Assert
+        assertEquals(new TicketAnalytics.OccupancyBucket(0, 0, 0, 0),
+                ticketAnalytics.getOccupancy(ParkingType.CAR, 0, QUARTER).get(0));
+        assertEquals(0, ticketAnalytics.getParked(ParkingType.CAR));
+    }
+
+    @Test
+    void committedExitAddsItsFareToTheDayRevenue() throws Exception {
+        // Arrange
+        ObservedTicketRepository observedRepository = new ObservedTicketRepository(ticketRepository, ticketAnalytics);
+        InMemoryUnitOfWork unitOfWork = new InMemoryUnitOfWork();
+        ticketAnalytics.backfill(ticketRepository);
+        Ticket entry = openTicket("ABCDEF", ParkingType.CAR, 0);
+        unitOfWork.execute(() -> observedRepository.saveTicket(entry));
+
+        // Act
+        entry.setOutTime(new Date(QUARTER));
+        entry.setPrice(0.75);
+        unitOfWork.execute(() -> observedRepository.updateExitTicket(entry));
+
+        // Assert
+        assertEquals(75L, ticketAnalytics.getRevenuePerDay(ParkingType.CAR,
+                LocalDate.of(1970, 1, 1), LocalDate.of(1970, 1, 1)).get(LocalDate.of(1970, 1, 1)));
+    }
+
+    @Test
+    void attachRefusesJournaledStorage(@TempDir Path journalDir) throws Exception {
+        // Arrange
+        try (StorageEngine storageEngine = StorageEngine.journaled(2, 1, journalDir, true, 0)) {
+            storageEngine.load();
+
+            // Act & Assert
+            assertThrows(IllegalStateException.class, () -> ticketAnalytics.attach(storageEngine));
+        }
+    }
+
+    @Test
+    void runReportRefusesJournaledStorage(@TempDir Path journalDir) throws Exception {
+        // Arrange
+        try (StorageEngine storageEngine = StorageEngine.journaled(2, 1, journalDir, true, 0)) {
+            storageEngine.load();
+
+            // Act & Assert
+            assertThrows(IllegalStateException.class, () -> TicketAnalytics.runReport(
+                    new String[]{"--analytics", "2024-01-01", "2024-01-31"}, storageEngine));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.StorageEngine;
+import com.parkit.parkingsystem.dao.archive.TicketArchive;
+import com.parkit.parkingsystem.dao.memory.InMemoryTicketRepository;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.parkit.parkingsystem.TicketFixture.closedTicket;
+import static com.parkit.parkingsystem.TicketFixture.openTicket;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketArchiveTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @TempDir
+    Path archiveDir;
+
+    // Spot id % 5 + 1, a CAR for even ids and a BIKE for odd ones
+    private static Ticket ticket(int id, String plate, long inTime, Long outTime, double price) {
+        Ticket ticket = TicketFixture.ticket(id % 5 + 1, id % 2 == 0 ? ParkingType.CAR : ParkingType.BIKE,
+                plate, inTime, outTime, price);
+        ticket.setId(id);
+        return ticket;
+    }
+
+    // Written out of in-time order, with one open ticket
+    private TicketArchive writeArchive() throws Exception {
+        Path file = archiveDir.resolve("tickets.arc");
+        TicketArchive.write(file, List.of(
+                ticket(3, "ABCDEF", 3 * HOUR, 4 * HOUR, 1.5),
+                ticket(1, "ABCDEF", HOUR, 2 * HOUR, 1.5),
+                ticket(2, "GHIJKL", 2 * HOUR, 3 * HOUR, 0.75),
+                ticket(4, "GHIJKL", 4 * HOUR, null, 0)));
+        return TicketArchive.open(file);
+    }
+
+    @Test
+    void writeSkipsOpenTickets() throws Exception {
+        // Act
+        TicketArchive archive = writeArchive();
+
+        // Assert
+        assertEquals(3, archive.size());
+        assertEquals(3, archive.getLastTicketId());
+    }
+
+    @Test
+    void findByInTimeReturnsTicketsOfRangeInInTimeOrder() throws Exception {
+        // Arrange
+        TicketArchive archive = writeArchive();
+
+        // Act
+        List<Ticket> range = archive.findByInTime(2 * HOUR, 3 * HOUR + 1);
+
+        // Assert
+        assertEquals(List.of(2, 3), range.stream().map(Ticket::getId).toList());
+        assertEquals(0, archive.scanByInTime(5 * HOUR, 6 * HOUR, (id, number, type, plate, price, in, out) -> fail()));
+    }
+
+    @Test
+    void findByInTimeReadsBackEveryField() throws Exception {
+        // Arrange
+        TicketArchive archive = writeArchive();
+
+        // Act
+        Ticket ticket = archive.findByInTime(2 * HOUR, 2 * HOUR + 1).get(0);
+
+        // Assert
+        assertEquals("GHIJKL", ticket.getVehicleRegNumber());
+        assertEquals(ParkingType.CAR, ticket.getParkingSpot().getParkingType());
+        assertEquals(3, ticket.getParkingSpot().getId());
+        assertEquals(0.75, ticket.getPrice());
+        assertEquals(3 * HOUR, ticket.getOutTime().getTime());
+    }
+
+    @Test
+    void findByPlateReturnsTicketsOfVehicle() throws Exception {
+        // Arrange
+        TicketArchive archive = writeArchive();
+
+        // Act & Assert
+        assertEquals(List.of(1, 3), archive.findByPlate("ABCDEF").stream().map(Ticket::getId).toList());
+        assertTrue(archive.findByPlate("MNOPQR").isEmpty());
+    }
+
+    @Test
+    void revenueCentsSumsPricesOfRange() throws Exception {
+        // Arrange
+        TicketArchive archive = writeArchive();
+
+        // Act & Assert
+        assertEquals(375, archive.revenueCents(0, 5 * HOUR));
+    }
+
+    // More than one export page of closed tickets, plus one vehicle still parked
+    private InMemoryTicketRepository repositoryWithHistory() {
+        InMemoryTicketRepository ticketRepository = new InMemoryTicketRepository();
+        List<Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            tickets.add(closedTicket("CAR" + (i % 100), ParkingType.CAR, i * HOUR, i * HOUR + HOUR, 1.5));
+        }
+        ticketRepository.saveTickets(tickets);
+        ticketRepository.saveTicket(openTicket("OPEN", ParkingType.CAR, 3000 * HOUR));
+        return ticketRepository;
+    }
+
+    @Test
+    void exportPagesThroughClosedTicketsOfRepository() throws Exception {
+        // Arrange
+        InMemoryTicketRepository ticketRepository = repositoryWithHistory();
+        Path file = archiveDir.resolve("tickets.arc");
+
+        // Act
+        int exported = TicketArchive.export(ticketRepository, file);
+
+        // Assert
+        TicketArchive archive = TicketArchive.open(file);
+        assertEquals(2500, exported);
+        assertEquals(2500, archive.size());
+        assertEquals(2500, archive.getLastTicketId());
+        assertTrue(archive.findByPlate("OPEN").isEmpty());
+    }
+
+    @Test
+    void exportedArchiveIsIndexedByPlateAndInTime() throws Exception {
+        // Arrange
+        Path file = archiveDir.resolve("tickets.arc");
+        TicketArchive.export(repositoryWithHistory(), file);
+
+        // Act
+        TicketArchive archive = TicketArchive.open(file);
+
+        // Assert
+        assertEquals(25, archive.findByPlate("CAR7").size());
+        assertEquals(10, archive.scanByInTime(100 * HOUR, 110 * HOUR, (id, number, type, plate, price, in, out) -> { }));
+    }
+
+    @Test
+    void exportRefusesJournaledStorage(@TempDir Path journalDir) throws Exception {
+        // Arrange
+        Path file = archiveDir.resolve("tickets.arc");
+        try (StorageEngine storageEngine = StorageEngine.journaled(2, 1, journalDir, true, 0)) {
+            storageEngine.load();
+
+            // Act & Assert
+            assertThrows(IllegalStateException.class, () -> TicketArchive.export(storageEngine, file));
+            assertFalse(Files.exists(file));
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.parkit.parkingsystem;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionContext;
+import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.dao.VehicleVisitCache;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.constants.ParkingType;
@@ -11,11 +15,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -139,15 +146,19 @@ class TicketDAOTest {
     void updateExitTicketWhenUpdateSucceeds() throws Exception {
         // Arrange
         when(preparedStatement.executeUpdate()).thenReturn(1);
+        ticketDAO.activeTicketRegistry.load(List.of(testTicket));
 
         // Act
         boolean result = ticketDAO.updateExitTicket(testTicket);
 
         // Assert
         assertTrue(result);
-        verify(preparedStatement).executeUpdate();
-        verify(preparedStatement).close();
+        verify(connection).prepareStatement(DBConstants.UPDATE_TICKET);
+        verify(connection).prepareStatement(DBConstants.DELETE_ACTIVE_TICKET);
+        verify(preparedStatement, times(2)).executeUpdate();
+        verify(preparedStatement, times(2)).close();
         verify(connection).close();
+        assertNull(ticketDAO.getActiveTicket("ABCDEF"));
     }
 
     @Test
@@ -165,6 +176,38 @@ class TicketDAOTest {
         verify(connection).close();
     }
 
+    @Test
+    void updateExitTicketTwiceFailsTheSecondExit() throws Exception {
+        // Arrange
+        //the second update matches no row, the ticket is no longer open
+        when(preparedStatement.executeUpdate()).thenReturn(1, 1, 0);
+
+        // Act
+        boolean firstExit = ticketDAO.updateExitTicket(testTicket);
+        boolean secondExit = ticketDAO.updateExitTicket(testTicket);
+
+        // Assert
+        assertTrue(firstExit);
+        assertFalse(secondExit);
+        assertTrue(DBConstants.UPDATE_TICKET.endsWith("and OUT_TIME is null"));
+        verify(connection, times(1)).prepareStatement(DBConstants.DELETE_ACTIVE_TICKET);
+    }
+
+    @Test
+    void updateExitTicketFailsWhenActiveSessionAlreadyEnded() throws Exception {
+        // Arrange
+        when(preparedStatement.executeUpdate()).thenReturn(1, 0);
+        ticketDAO.activeTicketRegistry.load(List.of(testTicket));
+
+        // Act
+        boolean result = ticketDAO.updateExitTicket(testTicket);
+
+        // Assert
+        assertFalse(result);
+        //nothing is committed, the registry keeps the session
+        assertNotNull(ticketDAO.getActiveTicket("ABCDEF"));
+    }
+
     @Test
     void getNbTicketsWhenTicketsFound() throws Exception {
         // Arrange
@@ -204,4 +247,301 @@ class TicketDAOTest {
         verify(connection).close();
     }
 
+
+    @Test
+    void saveTicketsReportsOutcomePerRow() throws Exception {
+        // Arrange
+        Ticket incompleteTicket = new Ticket();
+        incompleteTicket.setVehicleRegNumber("GHIJKL");
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1, Statement.SUCCESS_NO_INFO});
+
+        // Act
+        boolean[] outcomes = ticketDAO.saveTickets(List.of(testTicket, incompleteTicket, testTicket));
+
+        // Assert
+        assertArrayEquals(new boolean[]{true, false, true}, outcomes);
+        verify(preparedStatement, times(2)).addBatch();
+        verify(preparedStatement).executeBatch();
+        verify(preparedStatement).close();
+        verify(connection).close();
+    }
+
+    @Test
+    void updateExitTicketsWhenBatchPartiallyFails() throws Exception {
+        // Arrange
+        when(preparedStatement.executeBatch()).thenThrow(
+                new BatchUpdateException("Database error", new int[]{1, Statement.EXECUTE_FAILED}));
+
+        // Act
+        boolean[] outcomes = ticketDAO.updateExitTickets(List.of(testTicket, testTicket, testTicket));
+
+        // Assert
+        assertArrayEquals(new boolean[]{true, false, false}, outcomes);
+        //the active session of the closed ticket is deleted in a second batch
+        verify(connection).prepareStatement(DBConstants.DELETE_ACTIVE_TICKET);
+        verify(preparedStatement, times(2)).clearBatch();
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void saveSettlementRevenuesWritesOneRowPerParkingTypeInOneBatch() throws Exception {
+        // Arrange
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1, 1});
+
+        // Act
+        boolean[] outcomes = ticketDAO.saveSettlementRevenues(List.of(
+                new TicketRepository.SettlementRevenue(ParkingType.CAR, 0, 1000, 150, 180),
+                new TicketRepository.SettlementRevenue(ParkingType.BIKE, 0, 1000, 0, 100)));
+
+        // Assert
+        assertArrayEquals(new boolean[]{true, true}, outcomes);
+        verify(connection).prepareStatement(DBConstants.SAVE_SETTLEMENT_REVENUE);
+        verify(preparedStatement).setString(1, "CAR");
+        verify(preparedStatement).setLong(5, 180);
+        verify(preparedStatement).executeBatch();
+    }
+
+    @Test
+    void getNbTicketsServedFromCacheAfterFirstLookup() throws Exception {
+        // Arrange
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        // Act
+        int countBeforeEntry = ticketDAO.getNbTickets("ABCDEF");
+        ticketDAO.saveTicket(testTicket);
+        int countAfterEntry = ticketDAO.getNbTickets("ABCDEF");
+
+        // Assert
+        assertEquals(1, countBeforeEntry);
+        assertEquals(2, countAfterEntry);
+        verify(preparedStatement, times(1)).executeQuery();
+        assertEquals(1, ticketDAO.vehicleVisitCache.getHits());
+    }
+
+    @Test
+    void getNbTicketsQueriesEveryTimeWithEmptyCache() throws Exception {
+        // Arrange
+        ticketDAO.vehicleVisitCache = new VehicleVisitCache(0);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+
+        // Act
+        ticketDAO.getNbTickets("ABCDEF");
+        ticketDAO.getNbTickets("ABCDEF");
+
+        // Assert
+        verify(preparedStatement, times(2)).executeQuery();
+        assertEquals(0, ticketDAO.vehicleVisitCache.getHits());
+    }
+
+    @Test
+    void getNbTicketsDoesNotCacheCountReadDuringConcurrentEntry() throws Exception {
+        // Arrange
+        when(preparedStatement.executeQuery()).thenAnswer(invocation -> {
+            //an entry of the vehicle commits while its tickets are counted
+            ticketDAO.vehicleVisitCache.increment("ABCDEF");
+            return resultSet;
+        });
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+
+        // Act
+        ticketDAO.getNbTickets("ABCDEF");
+        ticketDAO.getNbTickets("ABCDEF");
+
+        // Assert
+        verify(preparedStatement, times(2)).executeQuery();
+        assertEquals(0, ticketDAO.vehicleVisitCache.size());
+    }
+
+    @Test
+    void getNbTicketsDoesNotCacheCountOfRolledBackTransaction() throws Exception {
+        // Arrange
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+
+        // Act
+        try (TransactionContext transaction = TransactionContext.begin()) {
+            ticketDAO.getNbTickets("ABCDEF");
+            transaction.rollback();
+        }
+
+        // Assert
+        assertEquals(0, ticketDAO.vehicleVisitCache.size());
+    }
+
+    @Test
+    void saveTicketOfParkedVehicleOpensActiveSession() throws Exception {
+        // Arrange
+        testTicket.setOutTime(null);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(42);
+        ticketDAO.activeTicketRegistry.load(List.of());
+
+        // Act
+        boolean result = ticketDAO.saveTicket(testTicket);
+
+        // Assert
+        assertTrue(result);
+        assertEquals(42, testTicket.getId());
+        verify(connection).prepareStatement(DBConstants.SAVE_ACTIVE_TICKET);
+        verify(preparedStatement).setInt(2, 42);
+        Ticket activeTicket = ticketDAO.getActiveTicket("ABCDEF");
+        assertEquals(42, activeTicket.getId());
+        assertNull(activeTicket.getOutTime());
+    }
+
+    @Test
+    void getActiveTicketReadsOnlyActiveSessions() throws Exception {
+        // Arrange
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(resultSet.getInt(2)).thenReturn(7);
+        when(resultSet.getTimestamp(3)).thenReturn(new java.sql.Timestamp(testTicket.getInTime().getTime()));
+        when(resultSet.getString(4)).thenReturn("CAR");
+
+        // Act
+        Ticket ticket = ticketDAO.getActiveTicket("ABCDEF");
+
+        // Assert
+        assertEquals(7, ticket.getId());
+        assertEquals(ParkingType.CAR, ticket.getParkingSpot().getParkingType());
+        assertNull(ticket.getOutTime());
+        verify(connection).prepareStatement(DBConstants.GET_ACTIVE_TICKET);
+        verify(connection, never()).prepareStatement(DBConstants.GET_TICKET);
+    }
+
+    @Test
+    void getExitLookupReadsTicketAndVisitCountInOneQuery() throws Exception {
+        // Arrange
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(resultSet.getInt(2)).thenReturn(7);
+        when(resultSet.getTimestamp(3)).thenReturn(new java.sql.Timestamp(testTicket.getInTime().getTime()));
+        when(resultSet.getString(4)).thenReturn("CAR");
+        when(resultSet.getInt(5)).thenReturn(3);
+
+        // Act
+        TicketRepository.ExitLookup exitLookup = ticketDAO.getExitLookup("ABCDEF");
+
+        // Assert
+        assertEquals(7, exitLookup.activeTicket().getId());
+        assertEquals(3, exitLookup.visitCount());
+        verify(preparedStatement, times(1)).executeQuery();
+        verify(connection).prepareStatement(DBConstants.GET_EXIT_LOOKUP);
+        //the count is cached for the next visits
+        assertEquals(3, ticketDAO.getNbTickets("ABCDEF"));
+    }
+
+    @Test
+    void getExitLookupWithLoadedSessionsAndCachedCountSkipsDatabase() throws Exception {
+        // Arrange
+        testTicket.setOutTime(null);
+        ticketDAO.activeTicketRegistry.load(List.of(testTicket));
+        ticketDAO.vehicleVisitCache.putIfAbsent("ABCDEF", 2, System.nanoTime());
+        reset(dataBaseConfig, connection);
+
+        // Act
+        TicketRepository.ExitLookup exitLookup = ticketDAO.getExitLookup("ABCDEF");
+        TicketRepository.ExitLookup notParked = ticketDAO.getExitLookup("GHIJKL");
+
+        // Assert
+        assertEquals(testTicket.getId(), exitLookup.activeTicket().getId());
+        assertEquals(2, exitLookup.visitCount());
+        assertNull(notParked.activeTicket());
+        verifyNoInteractions(dataBaseConfig);
+    }
+
+    @Test
+    void saveTicketsRefusesOpenTickets() throws Exception {
+        // Arrange
+        Ticket openTicket = new Ticket();
+        openTicket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        openTicket.setVehicleRegNumber("GHIJKL");
+        openTicket.setInTime(new Date());
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1});
+
+        // Act
+        boolean[] outcomes = ticketDAO.saveTickets(List.of(openTicket, testTicket));
+
+        // Assert
+        assertArrayEquals(new boolean[]{false, true}, outcomes);
+        verify(preparedStatement, times(1)).addBatch();
+    }
+
+    @Test
+    void getClosedTicketsReadsOnePageAfterGivenId() throws Exception {
+        // Arrange
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getInt(1)).thenReturn(8);
+        when(resultSet.getInt(2)).thenReturn(2);
+        when(resultSet.getString(3)).thenReturn("BIKE");
+        when(resultSet.getString(4)).thenReturn("ABCDEF");
+        when(resultSet.getDouble(5)).thenReturn(1.0);
+        when(resultSet.getTimestamp(6)).thenReturn(new java.sql.Timestamp(1000));
+        when(resultSet.getTimestamp(7)).thenReturn(new java.sql.Timestamp(2000));
+
+        // Act
+        List<Ticket> tickets = ticketDAO.getClosedTickets(7, 100);
+
+        // Assert
+        verify(connection).prepareStatement(DBConstants.GET_CLOSED_TICKETS);
+        verify(preparedStatement).setInt(1, 7);
+        verify(preparedStatement).setInt(2, 100);
+        assertEquals(1, tickets.size());
+        assertEquals(8, tickets.get(0).getId());
+        assertEquals(ParkingType.BIKE, tickets.get(0).getParkingSpot().getParkingType());
+        assertEquals(2000, tickets.get(0).getOutTime().getTime());
+    }
+
+    @Test
+    void updateTicketPricesOnlyUpdatesThePrice() throws Exception {
+        // Arrange
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1});
+
+        // Act
+        boolean[] outcomes = ticketDAO.updateTicketPrices(List.of(testTicket));
+
+        // Assert
+        verify(connection).prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+        verify(preparedStatement).setDouble(1, 1.5);
+        verify(preparedStatement).setInt(2, 1);
+        verify(connection, never()).prepareStatement(DBConstants.DELETE_ACTIVE_TICKET);
+        assertArrayEquals(new boolean[]{true}, outcomes);
+    }
+
+    @Test
+    void forEachTicketStreamsWithForwardOnlyCursor() throws Exception {
+        // Arrange
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt(1)).thenReturn(1, 2);
+        when(resultSet.getInt(2)).thenReturn(1);
+        when(resultSet.getString(3)).thenReturn("CAR");
+        when(resultSet.getString(4)).thenReturn("ABCDEF");
+        when(resultSet.getTimestamp(6)).thenReturn(new java.sql.Timestamp(1000));
+        when(resultSet.getTimestamp(7)).thenReturn(new java.sql.Timestamp(2000), (java.sql.Timestamp) null);
+        List<Ticket> tickets = new java.util.ArrayList<>();
+
+        // Act
+        long count = ticketDAO.forEachTicket(tickets::add);
+
+        // Assert
+        verify(connection).prepareStatement(DBConstants.GET_ALL_TICKETS);
+        verify(preparedStatement).setFetchSize(Integer.MIN_VALUE);
+        assertEquals(2, count);
+        assertEquals(2, tickets.get(1).getId());
+        assertNull(tickets.get(1).getOutTime());
+    }
 }
@@ -0,0 +1,33 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Date;
+
+// Tickets for the tests, times in epoch milliseconds; the spot is not available since the vehicle is on it
+final class TicketFixture {
+
+    private TicketFixture() {
+    }
+
+    // outTime null for a vehicle still parked
+    static Ticket ticket(int parkingNumber, ParkingType parkingType, String plate, long inTime, Long outTime, double price) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        ticket.setVehicleRegNumber(plate);
+        ticket.setInTime(new Date(inTime));
+        ticket.setOutTime(outTime == null ? null : new Date(outTime));
+        ticket.setPrice(price);
+        return ticket;
+    }
+
+    static Ticket openTicket(String plate, ParkingType parkingType, long inTime) {
+        return ticket(1, parkingType, plate, inTime, null, 0);
+    }
+
+    static Ticket closedTicket(String plate, ParkingType parkingType, long inTime, long outTime, double price) {
+        return ticket(1, parkingType, plate, inTime, outTime, price);
+    }
+}
@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.integration.service;
 
+import com.parkit.parkingsystem.config.SchemaMigrator;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 
 import java.sql.Connection;
@@ -8,6 +9,10 @@ public class DataBasePrepareService {
 
     DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
 
+    public void migrateDataBase() throws Exception {
+        new SchemaMigrator(dataBaseTestConfig).migrate();
+    }
+
     public void clearDataBaseEntries(){
         Connection connection = null;
         try{
@@ -17,7 +22,9 @@ public class DataBasePrepareService {
             connection.prepareStatement("update parking set available = true").execute();
 
             //clear ticket entries;
+            connection.prepareStatement("truncate table active_ticket").execute();
             connection.prepareStatement("truncate table ticket").execute();
+            connection.prepareStatement("truncate table settlement_revenue").execute();
 
         }catch(Exception e){
             e.printStackTrace();